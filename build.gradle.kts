@@ -13,6 +13,7 @@ plugins {
     id("java")
     id("maven-publish")
     id("com.github.johnrengelman.shadow").version("7.1.0")
+    id("me.champeau.jmh").version("0.6.6")
 }
 
 group = "ru.ckateptb.commons"
@@ -25,11 +26,37 @@ repositories {
     mavenCentral()
 }
 
-dependencies {
-    implementation("com.google.guava:guava:31.1-jre")
+// annotation processors, kept out of the runtime artifact so they only run where an application asks for them:
+// annotationProcessor("ru.ckateptb.commons:inversion-of-control:<version>:processor")
+val processor: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
 
+dependencies {
     compileOnly("org.projectlombok:lombok:1.18.22")
     annotationProcessor("org.projectlombok:lombok:1.18.22")
+
+    "processorCompileOnly"("org.projectlombok:lombok:1.18.22")
+    "processorAnnotationProcessor"("org.projectlombok:lombok:1.18.22")
+    testCompileOnly("org.projectlombok:lombok:1.18.22")
+    testAnnotationProcessor("org.projectlombok:lombok:1.18.22")
+    testImplementation("org.junit.jupiter:junit-jupiter:5.9.3")
+    // ContextWiringProcessorTest compiles its fixture with the test classpath, processors and Lombok included
+    testImplementation(processor.output)
+    testRuntimeOnly("org.projectlombok:lombok:1.18.22")
+
+    // baseline of ContextBenchmark#classPathScan
+    jmh("com.google.guava:guava:31.1-jre")
+    // SyntheticGraph compiles its sources with the benchmark classpath, processors included
+    jmh(processor.output)
+}
+
+jmh {
+    jmhVersion.set("1.35")
+    // machine readable results, kept per build so releases can be compared
+    resultFormat.set("JSON")
+    resultsFile.set(project.file("${project.buildDir}/reports/jmh/results.json"))
 }
 
 tasks {
@@ -38,6 +65,11 @@ tasks {
         relocate("javax", "${internal}.javax")
         relocate("org", "${internal}.org")
     }
+    register<Jar>("processorJar") {
+        archiveClassifier.set("processor")
+        // the processors read the annotations and index format of the library, so the jar carries both
+        from(processor.output, sourceSets.main.get().output)
+    }
     register<ProGuardTask>("shrink") {
         dependsOn(shadowJar)
         injars(shadowJar.get().outputs.files)
@@ -54,10 +86,13 @@ tasks {
         dontoptimize()
     }
     build {
-        dependsOn("shrink")
+        dependsOn("shrink", "processorJar")
     }
     publish {
-        dependsOn("shrink")
+        dependsOn("shrink", "processorJar")
+    }
+    test {
+        useJUnitPlatform()
     }
     withType<JavaCompile> {
         options.encoding = "UTF-8"
@@ -75,6 +110,7 @@ publishing {
         publications.create<MavenPublication>("maven") {
             artifacts {
                 artifact(tasks.getByName("shrink").outputs.files.singleFile)
+                artifact(tasks.getByName("processorJar"))
             }
         }
     }
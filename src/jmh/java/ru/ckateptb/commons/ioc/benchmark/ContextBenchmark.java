@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.benchmark;
+
+import com.google.common.reflect.ClassPath;
+import org.openjdk.jmh.annotations.*;
+import ru.ckateptb.commons.ioc.IoC;
+import ru.ckateptb.commons.ioc.annotations.Component;
+import ru.ckateptb.commons.ioc.annotations.Configuration;
+import ru.ckateptb.commons.ioc.core.ClassPathScanner;
+import ru.ckateptb.commons.ioc.core.ComponentIndex;
+import ru.ckateptb.commons.ioc.core.IoCHolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code IoC.init} of a synthetic application end to end, through the generated wiring and through the component
+ * index and reflection, and the component lookup it starts with: the {@link ClassPathScanner} and a read of the
+ * compile-time component index, against a Guava {@link ClassPath} scan that only lists the classes without checking
+ * their annotations. The lookups run against a class directory and against a jar.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class ContextBenchmark {
+    @Param({"100", "1000"})
+    private int size;
+    @Param({"4", "16"})
+    private int depth;
+    @Param({"1", "4"})
+    private int fanOut;
+
+    /**
+     * The application to init, compiled with or without its wiring.
+     */
+    @State(Scope.Benchmark)
+    public static class Application {
+        @Param({"true", "false"})
+        private boolean wiring;
+        private SyntheticGraph graph;
+        private IoCHolder holder;
+        private IoC<IoCHolder> context;
+
+        @Setup(Level.Trial)
+        public void generate(ContextBenchmark benchmark) throws IOException {
+            graph = SyntheticGraph.generate(benchmark.size, benchmark.depth, benchmark.fanOut, "", wiring);
+        }
+
+        @Setup(Level.Iteration)
+        public void load() throws ReflectiveOperationException, IOException {
+            ClassLoader classLoader = graph.newClassLoader();
+            holder = (IoCHolder) classLoader.loadClass(graph.getClassName("Holder")).getConstructor().newInstance();
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() {
+            if (context != null) context.close();
+            context = null;
+        }
+    }
+
+    /**
+     * The application to look the components up in, packaged as a class directory or as a jar.
+     */
+    @State(Scope.Benchmark)
+    public static class Classes {
+        @Param({"DIRECTORY", "JAR"})
+        private SyntheticGraph.Packaging packaging;
+        private SyntheticGraph graph;
+        private ClassLoader classLoader;
+
+        @Setup(Level.Trial)
+        public void generate(ContextBenchmark benchmark) throws IOException {
+            graph = SyntheticGraph.generate(benchmark.size, benchmark.depth, benchmark.fanOut);
+        }
+
+        @Setup(Level.Iteration)
+        public void load() throws IOException {
+            classLoader = graph.newClassLoader(packaging);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public IoC<IoCHolder> init(Application application) {
+        return application.context = IoC.init(application.holder);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int classPathScan(Classes classes) throws IOException {
+        return ClassPath.from(classes.classLoader).getTopLevelClassesRecursive(classes.graph.getPackageName()).size();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int scannerScan(Classes classes) {
+        return new ClassPathScanner(classes.classLoader, null)
+                .findAnnotatedClasses(classes.graph.getPackageName(), name -> true, List.of(Component.class, Configuration.class)).size();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int indexScan(Classes classes) throws IOException {
+        return ComponentIndex.load(classes.classLoader).getEntries(classes.graph.getPackageName()).size();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ckateptb.commons.ioc.annotations.EventListener;
+import ru.ckateptb.commons.ioc.core.EventBus;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event delivery to {@code listeners} beans, half of them subscribed to the published event class and half to its
+ * supertype:
+ * <ul>
+ *     <li>{@code reflective} - listeners matched per event and called through core reflection, the dispatch built on
+ *     {@code BeanRegisterHandler} before the bus existed</li>
+ *     <li>{@code publish} - synchronous {@link EventBus} dispatch through the precomputed table</li>
+ *     <li>{@code publishAsync} - hand-off to the ring buffer from several threads, throughput of the dispatcher</li>
+ *     <li>{@code asyncLatency} - time from {@link EventBus#publishAsync(Object)} until a listener has the event</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBusBenchmark {
+    @Param({"1", "8"})
+    private int listeners;
+    private final Event event = new Event();
+    private final List<Object> beans = new ArrayList<>();
+    private final List<Method> methods = new ArrayList<>();
+    private final PingListener pingListener = new PingListener();
+    private long sent;
+    private EventBus bus;
+
+    @Setup
+    public void setup() {
+        bus = new EventBus();
+        for (int i = 0; i < listeners; i++) {
+            Object bean = i % 2 == 0 ? new EventCounter() : new BaseEventCounter();
+            bus.on(bean);
+            beans.add(bean);
+            for (Method method : bean.getClass().getDeclaredMethods()) {
+                if (method.isAnnotationPresent(EventListener.class)) methods.add(method);
+            }
+        }
+        bus.on(pingListener);
+    }
+
+    @TearDown
+    public void tearDown() {
+        bus.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void reflective() throws InvocationTargetException, IllegalAccessException {
+        for (int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            if (method.getParameterTypes()[0].isAssignableFrom(event.getClass())) {
+                method.invoke(beans.get(i), event);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void publish() {
+        bus.publish(event);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void publishAsync() {
+        bus.publishAsync(event);
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void asyncLatency() {
+        long sequence = ++sent;
+        bus.publishAsync(new Ping(sequence));
+        while (pingListener.received < sequence) {
+            Thread.onSpinWait();
+        }
+    }
+
+    public static class BaseEvent {
+    }
+
+    public static class Event extends BaseEvent {
+    }
+
+    public record Ping(long sequence) {
+    }
+
+    public static class EventCounter {
+        private long count;
+
+        @EventListener
+        public void on(Event event) {
+            count++;
+        }
+    }
+
+    public static class BaseEventCounter {
+        private long count;
+
+        @EventListener
+        public void on(BaseEvent event) {
+            count++;
+        }
+    }
+
+    public static class PingListener {
+        private volatile long received;
+
+        @EventListener
+        public void on(Ping ping) {
+            received = ping.sequence();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ckateptb.commons.ioc.core.ImplementationContainer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of an interface with many implementations through {@link ImplementationContainer}, by field name and
+ * by qualifier, before and after the container is frozen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImplementationBenchmark {
+    @Param({"10", "100", "1000"})
+    private int implementations;
+    @Param({"false", "true"})
+    private boolean frozen;
+    private ImplementationContainer container;
+    private Class<?> node;
+    private String fieldName;
+    private String qualifier;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException, IOException {
+        SyntheticGraph graph = SyntheticGraph.generate(implementations, 1, 0);
+        ClassLoader classLoader = graph.newClassLoader();
+        node = classLoader.loadClass(graph.getClassName("Node"));
+        container = new ImplementationContainer();
+        for (int i = 0; i < implementations; i++) {
+            container.putImplementationClass(classLoader.loadClass(graph.getClassName("C" + i)), node);
+        }
+        if (frozen) container.freeze();
+        fieldName = "c" + implementations / 2;
+        qualifier = "C" + (implementations - 1);
+    }
+
+    @Benchmark
+    public Class<?> byFieldName() {
+        return container.getImplementationClass(node, fieldName, null);
+    }
+
+    @Benchmark
+    public Class<?> byQualifier() {
+        return container.getImplementationClass(node, null, qualifier);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.commons.ioc.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ckateptb.commons.ioc.annotations.Autowired;
+import ru.ckateptb.commons.ioc.annotations.PostConstruct;
+import ru.ckateptb.commons.ioc.annotations.Qualifier;
+import ru.ckateptb.commons.ioc.core.ComponentInjector;
+import ru.ckateptb.commons.ioc.utils.FinderUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates and wires one component with a constructor parameter, an {@code @Autowired} field, an {@code @Autowired}
+ * setter and a {@code @PostConstruct} method, with dependencies already resolved:
+ * <ul>
+ *     <li>{@code reflectiveLookup} - the former {@code IoC} path, members and qualifiers are looked up per instance</li>
+ *     <li>{@code reflectiveCached} - core reflection with members looked up once, the cost of the calls alone</li>
+ *     <li>{@code injector} - the precompiled {@link ComponentInjector}</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InjectionBenchmark {
+    private final Dependency dependency = new Dependency();
+    private ComponentInjector injector;
+    private Constructor<?> constructor;
+    private Field field;
+    private Method setter;
+    private Method postConstruct;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        injector = ComponentInjector.of(Target.class);
+        constructor = Target.class.getConstructors()[0];
+        field = FinderUtils.findFields(Target.class, Autowired.class).iterator().next();
+        setter = FinderUtils.findMethods(Target.class, Autowired.class).iterator().next();
+        postConstruct = FinderUtils.findMethods(Target.class, PostConstruct.class).iterator().next();
+    }
+
+    @Benchmark
+    public Object reflectiveLookup() throws ReflectiveOperationException {
+        Constructor<?> constructor = Target.class.getConstructors()[0];
+        Object[] arguments = arguments(constructor.getParameters());
+        Object instance = constructor.newInstance(arguments);
+        for (Method post : FinderUtils.findMethods(Target.class, PostConstruct.class)) {
+            post.invoke(instance);
+        }
+        for (Field field : FinderUtils.findFields(Target.class, Autowired.class)) {
+            String qualifier = field.isAnnotationPresent(Qualifier.class) ? field.getAnnotation(Qualifier.class).value() : null;
+            field.set(instance, qualifier == null ? dependency : null);
+        }
+        for (Method method : FinderUtils.findMethods(Target.class, Autowired.class)) {
+            method.invoke(instance, arguments(method.getParameters()));
+        }
+        return instance;
+    }
+
+    @Benchmark
+    public Object reflectiveCached() throws ReflectiveOperationException {
+        Object instance = constructor.newInstance(dependency);
+        postConstruct.invoke(instance);
+        field.set(instance, dependency);
+        setter.invoke(instance, dependency);
+        return instance;
+    }
+
+    @Benchmark
+    public Object injector() throws ReflectiveOperationException {
+        Object instance = injector.newInstance(new Object[]{dependency});
+        for (ComponentInjector.MethodInjector post : injector.getPostConstructs()) {
+            post.invoke(instance, new Object[0]);
+        }
+        for (ComponentInjector.FieldInjector field : injector.getFields()) {
+            field.inject(instance, dependency);
+        }
+        for (ComponentInjector.MethodInjector method : injector.getSetters()) {
+            method.invoke(instance, new Object[]{dependency});
+        }
+        return instance;
+    }
+
+    private Object[] arguments(Parameter[] parameters) {
+        Object[] arguments = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            String qualifier = parameters[i].isAnnotationPresent(Qualifier.class) ?
+                    parameters[i].getAnnotation(Qualifier.class).value() : null;
+            arguments[i] = qualifier == null ? dependency : null;
+        }
+        return arguments;
+    }
+
+    public static class Dependency {
+    }
+
+    public static class Target {
+        private final Dependency constructed;
+        @Autowired
+        private Dependency injected;
+        private Dependency set;
+        private boolean initialized;
+
+        public Target(Dependency constructed) {
+            this.constructed = constructed;
+        }
+
+        @Autowired
+        public void setDependency(Dependency set) {
+            this.set = set;
+        }
+
+        @PostConstruct
+        public void init() {
+            initialized = true;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ckateptb.commons.ioc.IoC;
+import ru.ckateptb.commons.ioc.core.BeanKey;
+import ru.ckateptb.commons.ioc.core.IoCHolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean lookups against an initialized synthetic context, from one thread and from as many threads as there are
+ * cores: {@code IoC#getBean} through the bean container, {@code IoC#get(BeanKey)} through the slots of the context
+ * and the static {@code IoC.get} through the global index, hits and misses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+    @Param({"1000"})
+    private int size;
+    private IoC<IoCHolder> context;
+    private Class<?> type;
+    private Class<?> node;
+    private BeanKey<?> key;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException, IOException {
+        SyntheticGraph graph = SyntheticGraph.generate(size, 4, 2);
+        ClassLoader classLoader = graph.newClassLoader();
+        IoCHolder holder = (IoCHolder) classLoader.loadClass(graph.getClassName("Holder")).getConstructor().newInstance();
+        context = IoC.init(holder);
+        type = classLoader.loadClass(graph.getClassName("C" + size / 2));
+        node = classLoader.loadClass(graph.getClassName("Node"));
+        key = BeanKey.of(type);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object getBean() {
+        return context.getBean(type);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object getBeanContended() {
+        return context.getBean(type);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object key() {
+        return context.get(key);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object keyContended() {
+        return context.get(key);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object staticGet() {
+        return IoC.get(type);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object staticGetContended() {
+        return IoC.get(type);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object staticGetQualified() {
+        return IoC.get(node, "C0");
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object staticGetMiss() {
+        return IoC.get(Runnable.class);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.commons.ioc.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ckateptb.commons.ioc.IoC;
+import ru.ckateptb.commons.ioc.core.IoCHolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code IoC.init} of a synthetic 1,000 component application, with the components created one by one on the
+ * calling thread ({@code Holder}) and along their dependency graph on the common pool ({@code ParallelHolder}).
+ * Every constructor either returns right away or blocks for a millisecond, like a connection pool or a config loader
+ * would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+    @Param({"1000"})
+    private int size;
+    @Param({"Holder", "ParallelHolder"})
+    private String holderClass;
+    @Param({"none", "blocking"})
+    private String work;
+    private SyntheticGraph graph;
+    private IoCHolder holder;
+    private IoC<IoCHolder> context;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        String constructorBody = work.equals("blocking") ? "java.util.concurrent.locks.LockSupport.parkNanos(1_000_000L);" : "";
+        graph = SyntheticGraph.generate(size, 8, 2, constructorBody);
+    }
+
+    @Setup(Level.Iteration)
+    public void load() throws ReflectiveOperationException, IOException {
+        ClassLoader classLoader = graph.newClassLoader();
+        holder = (IoCHolder) classLoader.loadClass(graph.getClassName(holderClass)).getConstructor().newInstance();
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        if (context != null) context.close();
+        context = null;
+    }
+
+    @Benchmark
+    public IoC<IoCHolder> init() {
+        return context = IoC.init(holder);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.benchmark;
+
+import ru.ckateptb.commons.ioc.processor.ComponentIndexProcessor;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic application compiled on the fly: {@code size} components spread over {@code depth} layers, every
+ * component taking {@code fanOut} components of the next layer as constructor parameters. All components implement
+ * the {@code Node} interface, the {@code Holder} class of the package is the {@code IoCHolder} to init, the
+ * {@code ParallelHolder} class one that creates the components on the common pool. Sources are compiled with the
+ * classpath of the benchmark, so the processors run as they would in a real build.
+ */
+public class SyntheticGraph {
+    private final String packageName;
+    private final int size;
+    private final Path classes;
+    private Path jar;
+
+    private SyntheticGraph(String packageName, int size, Path classes) {
+        this.packageName = packageName;
+        this.size = size;
+        this.classes = classes;
+    }
+
+    public static SyntheticGraph generate(int size, int depth, int fanOut) throws IOException {
+        return generate(size, depth, fanOut, "");
+    }
+
+    /**
+     * A graph whose components run {@code constructorBody} when they are created, e.g. to simulate a blocking
+     * connection pool.
+     */
+    public static SyntheticGraph generate(int size, int depth, int fanOut, String constructorBody) throws IOException {
+        return generate(size, depth, fanOut, constructorBody, true);
+    }
+
+    /**
+     * A graph compiled with every processor of the classpath, or with the component index processor alone when
+     * {@code wiring} is {@code false}, so {@code IoC.init} finds no generated wiring and creates the components
+     * reflectively.
+     */
+    public static SyntheticGraph generate(int size, int depth, int fanOut, String constructorBody, boolean wiring)
+            throws IOException {
+        String packageName = "synthetic.g" + size + "d" + depth + "f" + fanOut;
+        Path root = Files.createTempDirectory("ioc-synthetic");
+        Path sources = Files.createDirectories(root.resolve("src").resolve(packageName.replace('.', '/')));
+        Path classes = Files.createDirectories(root.resolve("classes"));
+        List<String> files = new ArrayList<>();
+        files.add(write(sources, "Node", "package " + packageName + ";\npublic interface Node {}\n"));
+        files.add(write(sources, "Holder", "package " + packageName + ";\n"
+                + "public class Holder implements ru.ckateptb.commons.ioc.core.IoCHolder {}\n"));
+        files.add(write(sources, "ParallelHolder", "package " + packageName + ";\n"
+                + "public class ParallelHolder implements ru.ckateptb.commons.ioc.core.IoCHolder {\n"
+                + "    public java.util.concurrent.ForkJoinPool getInstantiationPool() {\n"
+                + "        return java.util.concurrent.ForkJoinPool.commonPool();\n"
+                + "    }\n"
+                + "}\n"));
+        int layerSize = Math.max(1, (size + depth - 1) / depth);
+        Random random = new Random(size * 31L + depth * 7L + fanOut);
+        for (int i = 0; i < size; i++) {
+            int nextLayer = (i / layerSize + 1) * layerSize;
+            int available = Math.max(0, Math.min(size, nextLayer + layerSize) - nextLayer);
+            StringBuilder parameters = new StringBuilder();
+            for (int p = 0; p < Math.min(fanOut, available); p++) {
+                if (p > 0) parameters.append(", ");
+                parameters.append("C").append(nextLayer + random.nextInt(available)).append(" p").append(p);
+            }
+            files.add(write(sources, "C" + i, "package " + packageName + ";\n"
+                    + "@ru.ckateptb.commons.ioc.annotations.Component\n"
+                    + "public class C" + i + " implements Node {\n"
+                    + "    public C" + i + "(" + parameters + ") {" + constructorBody + "}\n"
+                    + "}\n"));
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<String> arguments = new ArrayList<>(List.of("-d", classes.toString(),
+                "-cp", System.getProperty("java.class.path"), "-nowarn"));
+        if (!wiring) arguments.addAll(List.of("-processor", ComponentIndexProcessor.class.getName()));
+        arguments.addAll(files);
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("Cannot compile " + packageName);
+        }
+        return new SyntheticGraph(packageName, size, classes);
+    }
+
+    private static String write(Path directory, String className, String source) throws IOException {
+        return Files.writeString(directory.resolve(className + ".java"), source).toString();
+    }
+
+    /**
+     * A fresh loader of the compiled classes, so every context sees classes no other context has created yet.
+     */
+    public ClassLoader newClassLoader() throws MalformedURLException {
+        return new URLClassLoader(new URL[]{classes.toUri().toURL()}, SyntheticGraph.class.getClassLoader());
+    }
+
+    /**
+     * A fresh loader of the compiled classes packaged the given way.
+     */
+    public ClassLoader newClassLoader(Packaging packaging) throws IOException {
+        if (packaging == Packaging.DIRECTORY) return newClassLoader();
+        return new URLClassLoader(new URL[]{getJar().toUri().toURL()}, SyntheticGraph.class.getClassLoader());
+    }
+
+    /**
+     * The compiled classes and resources as a jar of deflated entries, written on first use.
+     */
+    private synchronized Path getJar() throws IOException {
+        if (jar != null) return jar;
+        Path target = classes.resolveSibling("classes.jar");
+        try (OutputStream out = Files.newOutputStream(target);
+             JarOutputStream jarStream = new JarOutputStream(out);
+             Stream<Path> files = Files.walk(classes)) {
+            for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                if (Files.isDirectory(file)) continue;
+                jarStream.putNextEntry(new JarEntry(classes.relativize(file).toString().replace(File.separatorChar, '/')));
+                Files.copy(file, jarStream);
+                jarStream.closeEntry();
+            }
+        }
+        return jar = target;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getClassName(String simpleName) {
+        return packageName + "." + simpleName;
+    }
+
+    /**
+     * How the compiled classes are put on the class path.
+     */
+    public enum Packaging {
+        DIRECTORY,
+        JAR
+    }
+}
@@ -1,11 +1,14 @@
 package ru.ckateptb.commons.ioc;
 
-import com.google.common.reflect.ClassPath;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import ru.ckateptb.commons.ioc.annotations.*;
 import ru.ckateptb.commons.ioc.core.*;
+import ru.ckateptb.commons.ioc.diagnostics.ContextFootprint;
+import ru.ckateptb.commons.ioc.diagnostics.FootprintCollector;
+import ru.ckateptb.commons.ioc.diagnostics.StartupRecorder;
+import ru.ckateptb.commons.ioc.diagnostics.StartupReport;
 import ru.ckateptb.commons.ioc.exceptions.IoCBeanNotFound;
 import ru.ckateptb.commons.ioc.exceptions.IoCCircularDepException;
 import ru.ckateptb.commons.ioc.exceptions.IoCException;
@@ -14,63 +17,113 @@ import ru.ckateptb.commons.ioc.utils.FinderUtils;
 import java.io.IOException;
 import java.lang.reflect.*;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
-public class IoC<T extends IoCHolder> {
-    private static final List<BeanRegisterHandler> registerHandlers = new ArrayList<>();
-    private static final Map<IoCHolder, IoC<IoCHolder>> instances = new HashMap<>();
-    private static final BeanContainer beanContainer = new BeanContainer();
-    private static final ImplementationContainer implementationContainer = new ImplementationContainer();
-    private static final CircularDetector circularDetector = new CircularDetector();
+public class IoC<T extends IoCHolder> implements AutoCloseable {
+    private static final Map<IoCHolder, IoC<IoCHolder>> instances = new ConcurrentHashMap<>();
+    private static final BeanIndex beanIndex = new BeanIndex();
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+    private static final List<Class<?>> COMPONENT_ANNOTATIONS = List.of(Component.class, Configuration.class);
+    private final List<BeanRegisterHandler> registerHandlers = new ArrayList<>();
+    private final BeanContainer beanContainer = new BeanContainer();
+    private final ImplementationContainer implementationContainer = new ImplementationContainer();
+    private final CircularDetector circularDetector = new CircularDetector();
+    private final CreationRegistry creationRegistry = new CreationRegistry();
+    private final Lifecycle lifecycle = new Lifecycle();
+    private final EventBus eventBus = new EventBus();
+    private final BeanSlots slots = new BeanSlots();
+    private final List<IoC<?>> children = new CopyOnWriteArrayList<>();
     private final T holder;
     private final ClassLoader classLoader;
     private final Predicate<String> filter;
+    /**
+     * Context asked for the beans this one does not have, {@code null} for a root context.
+     */
+    private final IoC<?> parent;
+    private final StartupRecorder recorder = new StartupRecorder();
+    // tasks of each bean by identity, so a reload cancels exactly the tasks of the beans it replaces
+    private final Map<Object, List<ScheduledTask>> scheduledTasks = Collections.synchronizedMap(new IdentityHashMap<>());
+    private ComponentIndex componentIndex;
+    private ClassPathScanner classPathScanner;
+    private TaskScheduler scheduler;
+    /**
+     * Snapshot the packages are initialized from while {@link #init(IoCHolder, Object...)} runs a warm start.
+     */
+    private StartupCache startupCache;
+    /**
+     * Packages recorded while {@link #init(IoCHolder, Object...)} runs a cold start with the cache enabled.
+     */
+    private Map<String, StartupCache.PackageSnapshot> snapshots;
+    /**
+     * Whether a package could not be initialized from {@link #startupCache}, so the cache is rebuilt on the next start.
+     */
+    private boolean startupCacheOutdated;
 
     @SuppressWarnings("unchecked")
     public static <T extends IoCHolder> IoC<T> getInstance(T holder) {
         return (IoC<T>) instances.get(holder);
     }
 
+    /**
+     * A bean of the class from any context, {@code null} when there is none. Beans are found by their class, the type
+     * they were registered for and the interfaces their class declares; when several beans match, the one registered
+     * under the name of the class wins, otherwise the one registered first. A single lookup in a global index, cheap
+     * enough for hot paths.
+     */
+    @SuppressWarnings("unchecked")
     public static <T> T get(Class<T> clazz) {
-        for (IoC<?> ioC : instances.values()) {
-            T bean = ioC.getBean(clazz);
-            if (bean == null) continue;
-            return bean;
-        }
-        return null;
+        return (T) beanIndex.get(clazz);
     }
 
+    /**
+     * The bean of the class matching the qualifier from any context, {@code null} when there is none.
+     */
     @SuppressWarnings("unchecked")
     public static <T> T get(Class<T> clazz, String qualifier) {
-        for (IoC<?> ioC : instances.values()) {
-            Object bean = null;
-            try {
-                bean = ioC._getBean(clazz, null, qualifier, false);
-            } catch (InstantiationException | IllegalAccessException | NoSuchMethodException |
-                     InvocationTargetException |
-                     IoCBeanNotFound | IoCCircularDepException e) {
-                e.printStackTrace();
-            }
-            if (bean == null) continue;
-            return (T) bean;
-        }
-        return null;
+        return (T) beanIndex.get(clazz, qualifier);
     }
 
     public static <T extends IoCHolder> IoC<T> init(T holder, Object... predefinedBeans) {
         return init(holder, packageName -> true, predefinedBeans);
     }
 
-    @SuppressWarnings("unchecked")
     public static <T extends IoCHolder> IoC<T> init(T holder, Predicate<String> filter, Object... predefinedBeans) {
+        return init(null, holder, filter, predefinedBeans);
+    }
+
+    /**
+     * Creates a context that resolves the beans it does not have itself from {@code parent}, e.g. a plugin
+     * context on top of a context of shared infrastructure beans. Closing the parent closes the child first.
+     */
+    public static <T extends IoCHolder> IoC<T> initChild(IoC<?> parent, T holder, Object... predefinedBeans) {
+        return initChild(parent, holder, packageName -> true, predefinedBeans);
+    }
+
+    public static <T extends IoCHolder> IoC<T> initChild(IoC<?> parent, T holder, Predicate<String> filter, Object... predefinedBeans) {
+        return init(Objects.requireNonNull(parent, "parent"), holder, filter, predefinedBeans);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends IoCHolder> IoC<T> init(IoC<?> parent, T holder, Predicate<String> filter, Object... predefinedBeans) {
         try {
             Class<? extends IoCHolder> mainClass = holder.getClass();
-            IoC<T> instance = new IoC<>(holder, mainClass.getClassLoader(), filter);
-            instance.initWrapper(mainClass, predefinedBeans);
+            IoC<T> instance = new IoC<>(holder, mainClass.getClassLoader(), filter, parent);
+            if (parent != null) parent.children.add(instance);
+            try {
+                instance.initWrapper(mainClass, predefinedBeans);
+            } catch (Throwable throwable) {
+                instance.close();
+                throw throwable;
+            }
             instances.put(holder, (IoC<IoCHolder>) instance);
+            instance.lifecycle.signalReady();
             return instance;
         } catch (IOException | ClassNotFoundException | InstantiationException | IllegalAccessException |
                  InvocationTargetException | NoSuchMethodException | IoCBeanNotFound | IoCCircularDepException |
@@ -88,19 +141,312 @@ public class IoC<T extends IoCHolder> {
         }
     }
 
+    /**
+     * The bean of the key, looked up like {@link #getBean(Class)} with the qualifier of the key. The key is resolved
+     * on first use, later calls are a single array load until the beans of the context change.
+     */
+    @SuppressWarnings("unchecked")
+    public <B> B get(BeanKey<B> key) {
+        Object bean = slots.get(key);
+        return bean != null ? (B) bean : resolve(key);
+    }
+
+    private <B> B resolve(BeanKey<B> key) {
+        int version = slots.getVersion();
+        try {
+            B bean = key.getType().cast(_getBean(key.getType(), null, key.getQualifier(), false));
+            slots.put(key, bean, version);
+            return bean;
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
+                 NoSuchMethodException | IoCBeanNotFound | IoCCircularDepException e) {
+            throw new IoCException(e);
+        }
+    }
+
+    /**
+     * Drops the beans resolved through keys here and in the children, which may resolve them from this context.
+     */
+    private void clearSlots() {
+        slots.clear();
+        for (IoC<?> child : children) {
+            child.clearSlots();
+        }
+    }
+
     private void initWrapper(Class<?> mainClass, Object[] predefinedBeans) throws IOException, ClassNotFoundException,
             InstantiationException, IllegalAccessException, NoSuchMethodException,
             InvocationTargetException, IoCBeanNotFound, IoCCircularDepException, URISyntaxException {
+        scheduler = new TaskScheduler(holder.getMainThreadExecutor());
+        registerHandlers.add(eventBus);
+        beanContainer.putBean(EventBus.class, eventBus);
+        implementationContainer.putImplementationClass(EventBus.class, EventBus.class);
         if (predefinedBeans != null) {
             Set<Object> beans = Arrays.stream(predefinedBeans).collect(Collectors.toSet());
             beans.add(holder);
-            register(beans);
+            register(beans.toArray());
         }
         ComponentScan scan = mainClass.getAnnotation(ComponentScan.class);
-        if (scan == null) {
-            this.scan(mainClass.getPackage().getName());
-        } else {
-            this.scan(scan.value());
+        String[] packages = scan == null ? new String[]{mainClass.getPackage().getName()} : scan.value();
+        ContextWiring wiring = findWiring(mainClass, packages);
+        if (wiring != null) {
+            wire(wiring);
+            freeze();
+            return;
+        }
+        Path cacheDirectory = holder.getCacheDirectory();
+        if (cacheDirectory == null) {
+            this.scan(packages);
+            freeze();
+            return;
+        }
+        Path cacheFile = cacheDirectory.resolve("ioc-" + mainClass.getName() + ".cache");
+        byte[] fingerprint = StartupCache.fingerprint(Arrays.asList(packages), getClassPathScanner().getRoots());
+        startupCache = StartupCache.read(cacheFile, fingerprint);
+        if (startupCache == null) snapshots = new LinkedHashMap<>();
+        try {
+            this.scan(packages);
+        } finally {
+            startupCache = null;
+        }
+        freeze();
+        if (startupCacheOutdated) {
+            try {
+                Files.deleteIfExists(cacheFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (snapshots != null) {
+            try {
+                StartupCache.write(cacheFile, fingerprint, snapshots);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            snapshots = null;
+        }
+    }
+
+    /**
+     * The wiring generated for the holder, {@code null} when there is none or it does not match the packages: the
+     * component index has to cover them and list exactly the classes the wiring was generated for, of the classes
+     * with conditions only those whose conditions hold.
+     */
+    private ContextWiring findWiring(Class<?> mainClass, String[] packages) throws IOException {
+        Class<?> wiringClass = loadClass(mainClass.getName() + ContextWiring.SUFFIX, classLoader);
+        if (wiringClass == null || !ContextWiring.class.isAssignableFrom(wiringClass)) return null;
+        ContextWiring wiring;
+        try {
+            wiring = (ContextWiring) wiringClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+        if (!Arrays.equals(wiring.getPackages(), packages)) return null;
+        componentIndex = ComponentIndex.load(classLoader);
+        Conditions conditions = new Conditions(classLoader);
+        Set<String> classNames = new HashSet<>();
+        for (String packageName : packages) {
+            if (!componentIndex.covers(classLoader, packageName)) return null;
+            for (ComponentIndex.Entry entry : componentIndex.getEntries(packageName)) {
+                if (!filter.test(entry.getClassName())) continue;
+                // decided by the types of the other classes, which are only known once they are loaded
+                if (Condition.dependsOnBeans(entry.getConditions())) return null;
+                if (Condition.matches(entry.getClassName(), entry.getConditions(), conditions)) {
+                    classNames.add(entry.getClassName());
+                }
+            }
+        }
+        return classNames.equals(Set.of(wiring.getClassNames())) ? wiring : null;
+    }
+
+    @SuppressWarnings("try")
+    private void wire(ContextWiring wiring) throws InstantiationException, IllegalAccessException,
+            NoSuchMethodException, InvocationTargetException, IoCBeanNotFound, IoCCircularDepException {
+        beanContainer.putBean(IoC.class, this);
+        beanIndex.add(this, IoC.class, IoC.class.getName(), this);
+        implementationContainer.putImplementationClass(IoC.class, IoC.class);
+        Wiring context = new Wiring();
+        wiring.prepare(context);
+        Class<?>[] types = wiring.getTypes();
+        int[][] dependencies = wiring.getDependencies();
+        DependencyGraph<Integer> graph = new DependencyGraph<>();
+        for (int step = 0; step < types.length; step++) {
+            graph.addNode(step);
+            for (int dependency : dependencies[step]) {
+                graph.addDependency(step, dependency);
+            }
+        }
+        Object[] beans = new Object[types.length];
+        ForkJoinPool pool = holder.getInstantiationPool();
+        BlockingQueue<Runnable> callingThread = new LinkedBlockingQueue<>();
+        Executor sequential = callingThread::add;
+        CompletableFuture<Void> steps = graph.execute(step ->
+                pool == null || wiring.isSingleThreaded(step) ? sequential : pool, step -> {
+            try (StartupRecorder.Span ignored = recorder.creation(types[step])) {
+                wiring.run(step, beans, context);
+            } catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException |
+                     IoCBeanNotFound | IoCCircularDepException | IoCException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvocationTargetException(e);
+            }
+        });
+        await(steps, callingThread);
+    }
+
+    /**
+     * Compacts the containers into immutable lookup tables, so beans can be read from any thread without locking.
+     * Called automatically once {@link #init(IoCHolder, Object...)} completes; beans registered afterwards are
+     * published through copy-on-write.
+     */
+    public void freeze() {
+        beanContainer.freeze();
+        implementationContainer.freeze();
+        clearSlots();
+    }
+
+    /**
+     * Completes once {@link #init(IoCHolder, Object...)} has returned and every asynchronous {@code @PostConstruct}
+     * of the beans created by it has completed, exceptionally when one of them failed.
+     */
+    public CompletableFuture<IoC<T>> whenReady() {
+        return lifecycle.getReady().thenApply(ignored -> this);
+    }
+
+    /**
+     * Timings of the beans created by this context so far, slowest beans and critical path included. Every phase
+     * is also emitted as a JDK Flight Recorder event, see {@link ru.ckateptb.commons.ioc.diagnostics.IoCEvents}.
+     */
+    public StartupReport getStartupReport() {
+        return recorder.report();
+    }
+
+    /**
+     * Dependency graph of the beans of this context with their scope, creating thread, creation cost and approximate
+     * shallow and retained heap size, and the heap the container itself keeps for the context. Walks every object
+     * reachable from the beans, meant for finding bloated contexts rather than for frequent calls.
+     * <p>
+     * Beans of the parent contexts are not counted, neither are the fields of objects whose class comes from another
+     * class loader than the context and the container.
+     */
+    public ContextFootprint getFootprint() {
+        Map<Object, Map.Entry<Class<?>, String>> names = new IdentityHashMap<>();
+        beanContainer.getBeans().forEach((type, named) ->
+                named.forEach((name, bean) -> names.putIfAbsent(bean, Map.entry(type, name))));
+        ClassLoader containerLoader = IoC.class.getClassLoader();
+        FootprintCollector collector = new FootprintCollector(holder.getClass().getName(), recorder.report(),
+                type -> type.getClassLoader() == classLoader || type.getClassLoader() == containerLoader);
+        List<Object> metadata = new ArrayList<>();
+        for (Lifecycle.Registration registration : lifecycle.getRegistrations()) {
+            Object bean = registration.bean();
+            Class<?> origin = registration.origin();
+            Map.Entry<Class<?>, String> name = names.getOrDefault(bean, Map.entry(bean.getClass(), bean.getClass().getName()));
+            ContextFootprint.Scope scope;
+            if (origin == null) {
+                scope = ContextFootprint.Scope.REGISTERED;
+            } else if (name.getKey() != origin) {
+                scope = ContextFootprint.Scope.BEAN;
+            } else {
+                scope = origin.isAnnotationPresent(Lazy.class) ? ContextFootprint.Scope.LAZY : ContextFootprint.Scope.SINGLETON;
+            }
+            collector.addBean(bean, name.getKey(), name.getValue(), scope, origin, registration.dependencies());
+            // the metadata of the classes of beans wired by a generated class is never looked up
+            if (registration.callbacks() && origin != null) {
+                metadata.add(FinderUtils.getMetadata(origin));
+                metadata.add(injector(origin));
+            }
+        }
+        for (IoC<?> context = this; context != null; context = context.parent) {
+            collector.addBoundary(List.of(context, context.holder));
+            context.beanContainer.getBeans().values().forEach(named -> collector.addBoundary(named.values()));
+        }
+        collector.addOverhead("beanContainer", beanContainer, slots);
+        collector.addOverhead("implementationContainer", implementationContainer);
+        collector.addOverhead("lifecycle", lifecycle, creationRegistry, circularDetector);
+        collector.addOverhead("eventBus", eventBus, registerHandlers);
+        if (scheduler != null) collector.addOverhead("scheduler", scheduler);
+        collector.addOverhead("startupRecorder", recorder);
+        collector.addOverhead("reflectionMetadata", metadata.toArray());
+        return collector.collect();
+    }
+
+    /**
+     * Footprint of every initialized context, largest first, to find the contexts that keep the most heap.
+     */
+    public static List<ContextFootprint> getFootprints() {
+        return instances.values().stream()
+                .map(IoC::getFootprint)
+                .sorted(Comparator.comparingLong(ContextFootprint::getTotalBytes).reversed())
+                .toList();
+    }
+
+    /**
+     * Scheduler running the {@code @Scheduled} methods of this context's beans, with their run statistics.
+     */
+    public TaskScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Bus delivering events to the {@code @EventListener} methods of this context's beans.
+     */
+    public EventBus getEventBus() {
+        return eventBus;
+    }
+
+    public IoC<?> getParent() {
+        return parent;
+    }
+
+    /**
+     * Closes the context of the holder, see {@link #close()}. Does nothing when the holder has no context.
+     */
+    public static void close(IoCHolder holder) {
+        IoC<IoCHolder> instance = instances.get(holder);
+        if (instance != null) instance.close();
+    }
+
+    /**
+     * Unloads the context: closes its children, cancels its scheduled tasks, runs the {@code @PreDestroy} methods of
+     * its beans and drops every bean, implementation and index entry it registered, so nothing global keeps its
+     * classes or their class loader reachable.
+     */
+    @Override
+    public void close() {
+        for (IoC<?> child : children) {
+            child.close();
+        }
+        if (scheduler != null) scheduler.shutdown();
+        eventBus.shutdown();
+        destroyBeans(null);
+        instances.remove(holder, this);
+        beanIndex.removeAll(this);
+        if (parent != null) parent.children.remove(this);
+        beanContainer.clear();
+        implementationContainer.clear();
+        slots.close();
+        scheduledTasks.clear();
+        registerHandlers.clear();
+        componentIndex = null;
+        classPathScanner = null;
+    }
+
+    /**
+     * Runs the {@code @PreDestroy} methods of the beans created from the origins, of every bean when {@code null},
+     * concurrently on the instantiation pool when there is one; beans that are {@link SingleThreaded} or created
+     * without a pool are destroyed on the calling thread.
+     */
+    private void destroyBeans(Set<Class<?>> origins) {
+        ForkJoinPool pool = holder.getInstantiationPool();
+        BlockingQueue<Runnable> callingThread = new LinkedBlockingQueue<>();
+        Executor sequential = callingThread::add;
+        Function<Object, Executor> executors = bean ->
+                pool == null || bean.getClass().isAnnotationPresent(SingleThreaded.class) ? sequential : pool;
+        CompletableFuture<Void> destruction = origins == null ?
+                lifecycle.destroy(executors) : lifecycle.destroy(origins, executors);
+        try {
+            await(destruction, callingThread);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
         }
     }
 
@@ -111,6 +457,55 @@ public class IoC<T extends IoCHolder> {
         }
     }
 
+    /**
+     * Reloads the package from the context's class loader, see {@link #reload(String, ClassLoader)}.
+     */
+    public void reload(String packageName) {
+        reload(packageName, classLoader);
+    }
+
+    /**
+     * Replaces the components and configurations of the package and its subpackages with those found through
+     * {@code loader}, e.g. the class loader of an updated module, while the rest of the context keeps running.
+     * <p>
+     * Only the affected beans are touched: the beans created from classes of the package and, transitively, every
+     * bean that has one of them injected. Their {@code @PreDestroy} methods run, their scheduled tasks and listeners
+     * are removed, then the package is scanned again and the affected beans are created and injected anew. Handles
+     * resolved before the reload, such as a {@code Provider} or a {@code @Lazy} proxy, keep the old bean; child
+     * contexts are not reloaded.
+     */
+    public synchronized void reload(String packageName, ClassLoader loader) {
+        try {
+            String prefix = packageName + ".";
+            Predicate<Class<?>> changed = clazz -> clazz.getName().startsWith(prefix);
+            Set<Class<?>> origins = lifecycle.getAffectedOrigins(changed);
+            Set<Object> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+            removed.addAll(lifecycle.getBeans(origins));
+            destroyBeans(origins);
+            for (Object bean : removed) {
+                beanContainer.removeBean(bean);
+                eventBus.unregister(bean);
+                List<ScheduledTask> tasks = scheduledTasks.remove(bean);
+                if (tasks != null) scheduler.cancel(tasks);
+            }
+            beanIndex.remove(this, bean -> removed.contains(bean) || (bean instanceof Class<?> clazz && changed.test(clazz)));
+            implementationContainer.removeImplementationClasses(changed);
+            clearSlots();
+
+            Set<Class<?>> classes = findComponentClasses(packageName, loader, null);
+            scanImplementations(classes, null);
+            Set<Class<?>> recreated = new LinkedHashSet<>(classes);
+            for (Class<?> origin : origins) {
+                if (!changed.test(origin)) recreated.add(origin);
+            }
+            scanConfigurationClass(recreated);
+            scanComponentClasses(recreated, null, null);
+        } catch (IOException | InstantiationException | IllegalAccessException | InvocationTargetException |
+                 NoSuchMethodException | IoCBeanNotFound | IoCCircularDepException e) {
+            throw new IoCException(e);
+        }
+    }
+
     public void register(Object... beans) {
         for (Object bean : beans) {
             Class<?>[] interfaces = bean.getClass().getInterfaces();
@@ -122,200 +517,830 @@ public class IoC<T extends IoCHolder> {
                 }
             }
             beanContainer.putBean(bean.getClass(), bean);
+            onRegister(bean.getClass(), bean.getClass().getName(), bean, null, Collections.emptyList());
         }
     }
 
+    /**
+     * Publishes a bean that is ready for use, created from the {@code origin} class with the {@code dependencies}
+     * injected into it.
+     */
+    private void onRegister(Class<?> clazz, String name, Object bean, Class<?> origin, Collection<?> dependencies) {
+        onRegister(clazz, name, bean, origin, dependencies, true);
+    }
+
+    /**
+     * Publishes a bean like {@link #onRegister(Class, String, Object, Class, Collection)}, without looking for
+     * scheduled, listener and pre-destroy methods when {@code callbacks} is {@code false}.
+     */
+    private void onRegister(Class<?> clazz, String name, Object bean, Class<?> origin, Collection<?> dependencies, boolean callbacks) {
+        lifecycle.register(bean, origin, dependencies, callbacks);
+        beanIndex.add(this, clazz, name, bean);
+        // until the context is frozen nothing has settled yet, freezing clears the slots once
+        if (beanContainer.isFrozen()) clearSlots();
+        if (!callbacks) return;
+        registerHandlers.forEach(registerHandler -> registerHandler.on(bean));
+        scheduleTasks(bean);
+    }
+
+    private void scheduleTasks(Object bean) {
+        Class<?> clazz = bean.getClass();
+        ClassLoader loader = clazz.getClassLoader();
+        // JDK classes carry no @Scheduled methods and may not be opened for reflection
+        if (loader == null || loader == ClassLoader.getPlatformClassLoader()) return;
+        ComponentInjector.MethodInjector[] injectors = ComponentInjector.scheduledMethods(clazz);
+        if (injectors.length == 0) return;
+        List<ScheduledTask> tasks = new ArrayList<>(injectors.length);
+        for (ComponentInjector.MethodInjector injector : injectors) {
+            Method method = injector.getMethod();
+            Scheduled scheduled = method.getAnnotation(Scheduled.class);
+            tasks.add(scheduler.schedule(clazz.getName() + "#" + method.getName(), () -> {
+                try {
+                    injector.invoke(bean, NO_ARGUMENTS);
+                } catch (InvocationTargetException e) {
+                    throw new IoCException(e.getCause());
+                }
+            }, scheduled.delay(), scheduled.period(), scheduled.unit(), scheduled.async()));
+        }
+        scheduledTasks.put(bean, tasks);
+    }
+
     private void init(String packageName) throws IOException, InstantiationException, IllegalAccessException,
             NoSuchMethodException, InvocationTargetException, IoCBeanNotFound, IoCCircularDepException {
         beanContainer.putBean(IoC.class, this);
+        beanIndex.add(this, IoC.class, IoC.class.getName(), this);
         implementationContainer.putImplementationClass(IoC.class, IoC.class);
-        Set<Class<?>> classes = ClassPath.from(classLoader).getTopLevelClassesRecursive(packageName).stream()
-                .filter(classInfo -> filter.test(classInfo.getName()))
-                .map(classInfo -> {
-                    try {
-                        return classInfo.load();
-                    } catch (Exception ignored) {
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .filter(cl -> cl.isAnnotationPresent(Component.class) || cl.isAnnotationPresent(Configuration.class))
-                .collect(Collectors.toSet());
-        scanImplementations(classes);
+        StartupCache.PackageSnapshot cached = startupCache == null ? null : startupCache.getPackage(packageName);
+        Set<Class<?>> classes = cached == null ? null : loadCachedClasses(packageName, cached);
+        StartupCache.PackageSnapshot snapshot = null;
+        if (classes == null) {
+            if (cached != null) startupCacheOutdated = true;
+            cached = null;
+            if (snapshots != null) {
+                snapshot = new StartupCache.PackageSnapshot();
+                snapshots.put(packageName, snapshot);
+            }
+            classes = findComponentClasses(packageName, classLoader, snapshot);
+            if (snapshot != null) {
+                for (Class<?> clazz : classes) {
+                    snapshot.getClassNames().add(clazz.getName());
+                }
+            }
+            scanImplementations(classes, snapshot);
+        }
         scanConfigurationClass(classes);
-        scanComponentClasses(classes);
+        scanComponentClasses(classes, cached, snapshot);
     }
 
-    private void scanImplementations(Set<Class<?>> classes) {
+    /**
+     * Loads the classes of a cached package and registers its cached implementations, or returns {@code null}
+     * without registering anything when one of the classes cannot be loaded anymore or a condition of the package
+     * no longer has the recorded outcome.
+     */
+    private Set<Class<?>> loadCachedClasses(String packageName, StartupCache.PackageSnapshot cached) {
+        Set<String> deferred = new HashSet<>();
+        for (StartupCache.Conditional conditional : cached.getConditionals()) {
+            if (Condition.dependsOnBeans(conditional.conditions())) deferred.add(conditional.className());
+        }
+        Map<String, List<String>> provided = new HashMap<>();
+        Set<String> providedTypes = new HashSet<>();
+        for (StartupCache.Implementation implementation : cached.getImplementations()) {
+            if (deferred.contains(implementation.implementationClass())) {
+                provided.computeIfAbsent(implementation.implementationClass(), key -> new ArrayList<>()).add(implementation.interfaceClass());
+            } else {
+                providedTypes.add(implementation.interfaceClass());
+            }
+        }
+        Conditions conditions = new Conditions(classLoader, providedTypes);
+        for (StartupCache.Conditional conditional : cached.getConditionals()) {
+            if (Condition.matches(conditional.className(), conditional.conditions(), conditions) != conditional.matched()) {
+                return null;
+            }
+            if (conditional.matched()) providedTypes.addAll(provided.getOrDefault(conditional.className(), List.of()));
+        }
+        Map<String, Class<?>> classes = new LinkedHashMap<>();
+        try (StartupRecorder.Span span = recorder.scan(packageName)) {
+            for (String className : cached.getClassNames()) {
+                Class<?> clazz = loadClass(className, classLoader);
+                if (clazz == null) return null;
+                classes.put(className, clazz);
+            }
+            span.classCount(classes.size());
+        }
+        List<Class<?>[]> implementations = new ArrayList<>(cached.getImplementations().size());
+        for (StartupCache.Implementation implementation : cached.getImplementations()) {
+            Class<?> implementationClass = classes.containsKey(implementation.implementationClass()) ?
+                    classes.get(implementation.implementationClass()) : loadClass(implementation.implementationClass(), classLoader);
+            Class<?> interfaceClass = loadClass(implementation.interfaceClass(), classLoader);
+            if (implementationClass == null || interfaceClass == null) return null;
+            implementations.add(new Class<?>[]{implementationClass, interfaceClass});
+        }
+        for (int i = 0; i < implementations.size(); i++) {
+            implementationContainer.putImplementationClass(implementations.get(i)[0], implementations.get(i)[1],
+                    cached.getImplementations().get(i).qualifier());
+        }
+        return new LinkedHashSet<>(classes.values());
+    }
+
+    private ClassPathScanner getClassPathScanner() {
+        if (classPathScanner == null) {
+            classPathScanner = new ClassPathScanner(classLoader, holder.getInstantiationPool());
+        }
+        return classPathScanner;
+    }
+
+    /**
+     * Component and configuration classes of the package whose conditions hold, loaded from {@code loader}: the
+     * context's class loader or the one a package is {@linkplain #reload(String, ClassLoader) reloaded} from. The
+     * conditions are evaluated before a class is loaded and recorded into the snapshot when it is not {@code null}.
+     */
+    private Set<Class<?>> findComponentClasses(String packageName, ClassLoader loader, StartupCache.PackageSnapshot snapshot)
+            throws IOException {
+        ComponentIndex index;
+        if (loader == classLoader) {
+            if (componentIndex == null) {
+                componentIndex = ComponentIndex.load(classLoader);
+            }
+            index = componentIndex;
+        } else {
+            index = ComponentIndex.load(loader);
+        }
+        try (StartupRecorder.Span span = recorder.scan(packageName)) {
+            Map<String, List<Condition>> candidates;
+            if (index.covers(loader, packageName)) {
+                candidates = new LinkedHashMap<>();
+                for (ComponentIndex.Entry entry : index.getEntries(packageName)) {
+                    if (filter.test(entry.getClassName())) candidates.put(entry.getClassName(), entry.getConditions());
+                }
+            } else {
+                ClassPathScanner scanner = loader == classLoader ?
+                        getClassPathScanner() : new ClassPathScanner(loader, holder.getInstantiationPool());
+                candidates = scanner.findConditionalClasses(packageName, filter, COMPONENT_ANNOTATIONS);
+            }
+            Set<String> providedTypes = new HashSet<>();
+            Conditions conditions = new Conditions(loader, providedTypes);
+            Set<Class<?>> classes = new HashSet<>();
+            List<Map.Entry<String, List<Condition>>> deferred = new ArrayList<>();
+            for (Map.Entry<String, List<Condition>> candidate : candidates.entrySet()) {
+                if (Condition.dependsOnBeans(candidate.getValue())) {
+                    deferred.add(candidate);
+                } else if (matches(candidate.getKey(), candidate.getValue(), conditions, snapshot)) {
+                    addComponentClass(loadClass(candidate.getKey(), loader), classes, providedTypes);
+                }
+            }
+            // a missing bean is looked for among the types the other classes of the package provide, by class
+            // name so jars, directories and the index agree
+            deferred.sort(Map.Entry.comparingByKey());
+            for (Map.Entry<String, List<Condition>> candidate : deferred) {
+                if (matches(candidate.getKey(), candidate.getValue(), conditions, snapshot)) {
+                    addComponentClass(loadClass(candidate.getKey(), loader), classes, providedTypes);
+                }
+            }
+            span.classCount(classes.size());
+            return classes;
+        }
+    }
+
+    /**
+     * Whether the conditions of the candidate hold, recording the outcome into the snapshot when it is not
+     * {@code null}.
+     */
+    private boolean matches(String className, List<Condition> conditions, Conditions environment,
+                            StartupCache.PackageSnapshot snapshot) {
+        if (conditions.isEmpty()) return true;
+        boolean matched = Condition.matches(className, conditions, environment);
+        if (snapshot != null) snapshot.getConditionals().add(new StartupCache.Conditional(className, conditions, matched));
+        return matched;
+    }
+
+    /**
+     * Adds a loaded component or configuration class together with the types it provides, the implementations
+     * {@link #scanImplementations(Set, StartupCache.PackageSnapshot)} registers for it.
+     */
+    private static void addComponentClass(Class<?> clazz, Set<Class<?>> classes, Set<String> providedTypes) {
+        if (clazz == null) return;
+        if (clazz.isAnnotationPresent(Component.class)) {
+            classes.add(clazz);
+            Class<?>[] interfaces = clazz.getInterfaces();
+            if (interfaces.length == 0) providedTypes.add(clazz.getName());
+            for (Class<?> interfaceClass : interfaces) {
+                providedTypes.add(interfaceClass.getName());
+            }
+        } else if (clazz.isAnnotationPresent(Configuration.class)) {
+            classes.add(clazz);
+            for (Method method : FinderUtils.getMetadata(clazz).getBeanMethods()) {
+                providedTypes.add(method.getReturnType().getName());
+            }
+        }
+    }
+
+    @SuppressWarnings("try")
+    private Class<?> loadClass(String className, ClassLoader loader) {
+        try (StartupRecorder.Span span = recorder.classLoad(className)) {
+            return loader.loadClass(className);
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Registers the implementations found in the classes, recording them into the snapshot when it is not
+     * {@code null}.
+     */
+    private void scanImplementations(Set<Class<?>> classes, StartupCache.PackageSnapshot snapshot) {
         Set<Class<?>> componentClasses = classes.stream().filter(cl -> cl.isAnnotationPresent(Component.class)).collect(Collectors.toSet());
         for (Class<?> implementationClass : componentClasses) {
             Class<?>[] interfaces = implementationClass.getInterfaces();
             if (interfaces.length == 0) {
-                implementationContainer.putImplementationClass(implementationClass, implementationClass);
+                putImplementationClass(implementationClass, implementationClass, snapshot);
             } else {
                 for (Class<?> interfaceClass : interfaces) {
-                    implementationContainer.putImplementationClass(implementationClass, interfaceClass);
+                    putImplementationClass(implementationClass, interfaceClass, snapshot);
                 }
             }
         }
         Set<Class<?>> configurationClasses = classes.stream().filter(cl -> cl.isAnnotationPresent(Configuration.class)).collect(Collectors.toSet());
         for (Class<?> configurationClass : configurationClasses) {
-            Set<Method> methods = FinderUtils.findMethods(configurationClass, Bean.class);
-            for (Method method : methods) {
+            for (Method method : FinderUtils.getMetadata(configurationClass).getBeanMethods()) {
                 Class<?> returnType = method.getReturnType();
-                implementationContainer.putImplementationClass(returnType, returnType);
+                putImplementationClass(returnType, returnType, snapshot);
             }
         }
     }
 
+    private void putImplementationClass(Class<?> implementationClass, Class<?> interfaceClass, StartupCache.PackageSnapshot snapshot) {
+        if (snapshot == null) {
+            implementationContainer.putImplementationClass(implementationClass, interfaceClass);
+            return;
+        }
+        String qualifier = FinderUtils.getMetadata(implementationClass).getQualifier();
+        qualifier = qualifier == null ? "" : qualifier;
+        implementationContainer.putImplementationClass(implementationClass, interfaceClass, qualifier);
+        snapshot.getImplementations().add(new StartupCache.Implementation(implementationClass.getName(), interfaceClass.getName(), qualifier));
+    }
+
+    /**
+     * Creates every configuration class once and invokes its {@code @Bean} methods in dependency order. A
+     * configuration depends on the beans injected into it, a {@code @Bean} method on its configuration and on the
+     * beans passed as its parameters; such beans come from other {@code @Bean} methods, from components created on
+     * demand or from beans that are already registered.
+     */
     private void scanConfigurationClass(Set<Class<?>> classes) throws IoCCircularDepException, InvocationTargetException,
-            IllegalAccessException, InstantiationException, NoSuchMethodException {
-        Deque<Class<?>> configurationClassesQ = new ArrayDeque<>(5);
+            IllegalAccessException, InstantiationException, NoSuchMethodException, IoCBeanNotFound {
+        DependencyGraph<Object> graph = new DependencyGraph<>();
+        Map<ComponentInjector.MethodInjector, Class<?>> owners = new HashMap<>();
+        Map<Class<?>, List<ComponentInjector.MethodInjector>> providers = new HashMap<>();
         for (Class<?> clazz : classes) {
-            if (clazz.isAnnotationPresent(Configuration.class)) {
-                configurationClassesQ.add(clazz);
+            if (!clazz.isAnnotationPresent(Configuration.class)) continue;
+            graph.addNode(clazz);
+            for (ComponentInjector.MethodInjector beanMethod : injector(clazz).getBeanMethods()) {
+                graph.addDependency(beanMethod, clazz);
+                owners.put(beanMethod, clazz);
+                providers.computeIfAbsent(beanMethod.getMethod().getReturnType(), type -> new ArrayList<>()).add(beanMethod);
             }
         }
-        while (!configurationClassesQ.isEmpty()) {
-            Class<?> configurationClass = configurationClassesQ.removeFirst();
+        if (graph.getNodes().isEmpty()) return;
+        for (Object node : new ArrayList<>(graph.getNodes())) {
+            for (ComponentInjector.Dependency dependency : getConfigurationDependencies(node)) {
+                if (dependency.isLazy()) continue;
+                if (dependency.isAggregate()) {
+                    providers.forEach((type, provided) -> {
+                        if (dependency.getType().isAssignableFrom(type)) {
+                            for (ComponentInjector.MethodInjector provider : provided) {
+                                // a bean method collecting its own type does not wait for itself
+                                if (provider != node) graph.addDependency(node, provider);
+                            }
+                        }
+                    });
+                    continue;
+                }
+                List<ComponentInjector.MethodInjector> provided = findProviders(providers, dependency);
+                if (!provided.isEmpty()) {
+                    provided.forEach(provider -> graph.addDependency(node, provider));
+                } else if (!isResolvable(dependency, classes)) {
+                    throw new IoCBeanNotFound("Cannot found bean for " + dependency.getType().getName()
+                            + ": " + describeChain(graph, node) + " -> " + dependency.getType().getName());
+                }
+            }
+        }
+        List<Object> cycle = graph.findCycle();
+        if (!cycle.isEmpty()) {
+            throw new IoCCircularDepException("Circular dependency detected between configurations: "
+                    + cycle.stream().map(IoC::describe).collect(Collectors.joining(" -> ")));
+        }
+        Map<Class<?>, Object> configurations = new ConcurrentHashMap<>();
+        ForkJoinPool pool = holder.getInstantiationPool();
+        BlockingQueue<Runnable> callingThread = new LinkedBlockingQueue<>();
+        Executor sequential = callingThread::add;
+        CompletableFuture<Void> processing = graph.execute(node -> {
+            Class<?> configurationClass = node instanceof Class<?> clazz ? clazz : owners.get(node);
+            return pool == null || configurationClass.isAnnotationPresent(SingleThreaded.class) ? sequential : pool;
+        }, node -> {
+            if (node instanceof Class<?> configurationClass) {
+                configurations.put(configurationClass, newConfiguration(configurationClass));
+            } else {
+                ComponentInjector.MethodInjector beanMethod = (ComponentInjector.MethodInjector) node;
+                invokeBeanMethod(configurations.get(owners.get(beanMethod)), beanMethod);
+            }
+        });
+        await(processing, callingThread);
+    }
+
+    private static List<ComponentInjector.Dependency> getConfigurationDependencies(Object node) {
+        if (node instanceof ComponentInjector.MethodInjector beanMethod) {
+            return Arrays.asList(beanMethod.getDependencies());
+        }
+        ComponentInjector injector = injector((Class<?>) node);
+        List<ComponentInjector.Dependency> dependencies = new ArrayList<>(Arrays.asList(injector.getConstructorDependencies()));
+        for (ComponentInjector.FieldInjector field : injector.getFields()) {
+            dependencies.add(field.getDependency());
+        }
+        return dependencies;
+    }
+
+    private List<ComponentInjector.MethodInjector> findProviders(Map<Class<?>, List<ComponentInjector.MethodInjector>> providers,
+                                                                 ComponentInjector.Dependency dependency) {
+        Class<?> type = dependency.getType();
+        List<ComponentInjector.MethodInjector> provided = providers.get(type);
+        if (provided == null && type.isInterface()) {
             try {
-                Object instance = configurationClass.getConstructor().newInstance();
-                circularDetector.detect(configurationClass);
-                scanConfigurationBeans(configurationClass, instance);
-            } catch (IoCBeanNotFound e) {
-                configurationClassesQ.addLast(configurationClass);
+                provided = providers.get(implementationContainer.getImplementationClass(type, dependency.getName(), dependency.getQualifier()));
+            } catch (IoCException ignored) {
+                // no single implementation of the interface
+            }
+        }
+        if (provided == null) return Collections.emptyList();
+        String qualifier = dependency.getQualifier();
+        if (qualifier != null && !qualifier.isEmpty()) {
+            for (ComponentInjector.MethodInjector beanMethod : provided) {
+                if (qualifier.equals(getBeanName(beanMethod.getMethod()))) return List.of(beanMethod);
             }
         }
+        return provided;
     }
 
-    private void scanComponentClasses(Set<Class<?>> classes) throws IoCCircularDepException, InvocationTargetException,
-            IllegalAccessException, InstantiationException, NoSuchMethodException, IoCBeanNotFound {
-        for (Class<?> clazz : classes) {
-            if (clazz.isAnnotationPresent(Component.class)) {
-                newInstanceWrapper(clazz);
+    private boolean isResolvable(ComponentInjector.Dependency dependency, Set<Class<?>> classes) {
+        Class<?> type = dependency.getType();
+        Class<?> implementationClass;
+        try {
+            implementationClass = type.isInterface() ?
+                    implementationContainer.getImplementationClass(type, dependency.getName(), dependency.getQualifier()) : type;
+        } catch (IoCException e) {
+            return parent != null && parent.isResolvable(dependency, Collections.emptySet());
+        }
+        return beanContainer.containsBean(implementationClass) ||
+                (classes.contains(implementationClass) && implementationClass.isAnnotationPresent(Component.class)) ||
+                (parent != null && parent.isResolvable(dependency, Collections.emptySet()));
+    }
+
+    /**
+     * Path from a configuration nothing depends on down to the node.
+     */
+    private static String describeChain(DependencyGraph<Object> graph, Object node) {
+        Deque<String> chain = new ArrayDeque<>();
+        Set<Object> visited = new HashSet<>();
+        Object current = node;
+        while (current != null && visited.add(current)) {
+            chain.addFirst(describe(current));
+            Object dependent = null;
+            for (Object candidate : graph.getNodes()) {
+                if (graph.getDependencies(candidate).contains(current)) {
+                    dependent = candidate;
+                    break;
+                }
             }
+            current = dependent;
         }
+        return String.join(" -> ", chain);
     }
 
-    private void scanConfigurationBeans(Class<?> clazz, Object classInstance) throws InvocationTargetException, IllegalAccessException,
-            InstantiationException, NoSuchMethodException, IoCBeanNotFound, IoCCircularDepException {
-        Set<Method> methods = FinderUtils.findMethods(clazz, Bean.class);
-        Set<Field> fields = FinderUtils.findFields(clazz, Autowired.class);
+    private static String describe(Object node) {
+        if (node instanceof ComponentInjector.MethodInjector beanMethod) {
+            Method method = beanMethod.getMethod();
+            return method.getDeclaringClass().getName() + "#" + method.getName();
+        }
+        return ((Class<?>) node).getName();
+    }
 
-        for (Field field : fields) {
-            String qualifier = field.isAnnotationPresent(Qualifier.class) ? field.getAnnotation(Qualifier.class).value() : null;
-            Object fieldInstance = _getBean(field.getType(), field.getName(), qualifier, false);
-            field.set(classInstance, fieldInstance);
+    private static String getBeanName(Method method) {
+        String name = method.getAnnotation(Bean.class).value();
+        return name.isEmpty() ? method.getReturnType().getName() : name;
+    }
+
+    /**
+     * Creates the components, with the dependencies between them taken from the cached package when there is one
+     * and recorded into the snapshot when it is not {@code null}.
+     */
+    private void scanComponentClasses(Set<Class<?>> classes, StartupCache.PackageSnapshot cached, StartupCache.PackageSnapshot snapshot)
+            throws IoCCircularDepException, InvocationTargetException, IllegalAccessException, InstantiationException,
+            NoSuchMethodException, IoCBeanNotFound {
+        DependencyGraph<Class<?>> graph = new DependencyGraph<>();
+        for (Class<?> clazz : classes) {
+            if (!clazz.isAnnotationPresent(Component.class)) continue;
+            if (clazz.isAnnotationPresent(Lazy.class)) {
+                beanIndex.addDeferred(this, clazz, clazz.getName(), () -> getBean(clazz));
+            } else {
+                graph.addNode(clazz);
+            }
+        }
+        ForkJoinPool pool = holder.getInstantiationPool();
+        if (pool != null || snapshot != null) {
+            Map<String, Class<?>> byName = new HashMap<>();
+            for (Class<?> clazz : graph.getNodes()) {
+                byName.put(clazz.getName(), clazz);
+            }
+            for (Class<?> clazz : List.copyOf(graph.getNodes())) {
+                List<String> cachedDependencies = cached == null ? null : cached.getDependencies().get(clazz.getName());
+                if (cachedDependencies != null) {
+                    for (String dependency : cachedDependencies) {
+                        Class<?> dependencyClass = byName.get(dependency);
+                        if (dependencyClass != null) graph.addDependency(clazz, dependencyClass);
+                    }
+                    continue;
+                }
+                List<String> recorded = new ArrayList<>();
+                for (Class<?> dependency : findComponentDependencies(clazz)) {
+                    if (graph.containsNode(dependency)) {
+                        graph.addDependency(clazz, dependency);
+                        recorded.add(dependency.getName());
+                    }
+                }
+                if (snapshot != null) snapshot.getDependencies().put(clazz.getName(), recorded);
+            }
+        }
+        if (pool != null) {
+            BlockingQueue<Runnable> callingThread = new LinkedBlockingQueue<>();
+            Executor sequential = callingThread::add;
+            CompletableFuture<Void> instantiation = graph.execute(clazz ->
+                    clazz.isAnnotationPresent(SingleThreaded.class) ? sequential : pool, this::createBean);
+            await(instantiation, callingThread);
+        }
+        // components on a dependency cycle are left to the regular recursive creation
+        for (Class<?> clazz : graph.getNodes()) {
+            createBean(clazz);
         }
+    }
 
-        for (Method method : methods) {
-            Class<?> beanType = method.getReturnType();
-            Object beanInstance = method.invoke(classInstance);
-            String name = method.getAnnotation(Bean.class).value();
-            beanContainer.putBean(beanType, beanInstance, name);
+    /**
+     * Implementation classes of every injection point of the component, as far as they can be resolved before any
+     * instance exists.
+     */
+    private Set<Class<?>> findComponentDependencies(Class<?> clazz) {
+        Set<Class<?>> dependencies = new LinkedHashSet<>();
+        ComponentInjector injector;
+        try {
+            injector = injector(clazz);
+        } catch (IoCException e) {
+            return dependencies;
+        }
+        List<ComponentInjector.Dependency> injectionPoints = new ArrayList<>(Arrays.asList(injector.getConstructorDependencies()));
+        for (ComponentInjector.FieldInjector field : injector.getFields()) {
+            injectionPoints.add(field.getDependency());
         }
+        for (ComponentInjector.MethodInjector setter : injector.getSetters()) {
+            injectionPoints.addAll(Arrays.asList(setter.getDependencies()));
+        }
+        for (ComponentInjector.Dependency dependency : injectionPoints) {
+            if (dependency.isLazy()) continue;
+            Class<?> type = dependency.getType();
+            if (dependency.isAggregate()) {
+                dependencies.addAll(type.isInterface() ? implementationContainer.getImplementationClasses(type) : Set.of(type));
+                continue;
+            }
+            try {
+                dependencies.add(type.isInterface() ?
+                        implementationContainer.getImplementationClass(type, dependency.getName(), dependency.getQualifier()) : type);
+            } catch (IoCException ignored) {
+                // reported when the component is created
+            }
+        }
+        return dependencies;
     }
 
-    private Object newInstanceWrapper(Class<?> clazz) throws InvocationTargetException,
-            IllegalAccessException, InstantiationException, NoSuchMethodException, IoCBeanNotFound, IoCCircularDepException {
-        if (beanContainer.containsBean(clazz)) {
-            return beanContainer.getBean(clazz);
+    /**
+     * Waits for the future, running the tasks queued for the calling thread meanwhile.
+     */
+    private void await(CompletableFuture<?> future, BlockingQueue<Runnable> callingThread) {
+        future.whenComplete((result, throwable) -> callingThread.add(() -> {
+        }));
+        try {
+            while (!future.isDone()) {
+                callingThread.take().run();
+            }
+            future.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IoCException(e);
+        } catch (CompletionException e) {
+            rethrow(e.getCause());
         }
+    }
 
-        circularDetector.detect(clazz);
+    @SneakyThrows
+    private static void rethrow(Throwable throwable) {
+        throw throwable;
+    }
 
-        Object instance = newInstance(clazz);
-        beanContainer.putBean(clazz, instance);
-        fieldInject(clazz, instance);
-        setterInject(clazz, instance);
-        registerHandlers.forEach(registerHandlers -> registerHandlers.on(instance));
+    private Object newConfiguration(Class<?> clazz) throws InvocationTargetException, IllegalAccessException,
+            InstantiationException, NoSuchMethodException, IoCBeanNotFound, IoCCircularDepException {
+        ComponentInjector injector = injector(clazz);
+        Object instance = injector.newInstance(getParameters(injector.getConstructorDependencies(), new ArrayList<>()));
+        for (ComponentInjector.FieldInjector field : injector.getFields()) {
+            ComponentInjector.Dependency dependency = field.getDependency();
+            Object fieldInstance = _getBean(dependency.getType(), dependency.getName(), dependency.getQualifier(), true);
+            field.inject(instance, fieldInstance);
+        }
         return instance;
     }
 
-    private Object newInstance(Class<?> clazz) throws IllegalAccessException,
-            InstantiationException, InvocationTargetException, NoSuchMethodException,
-            IoCBeanNotFound, IoCCircularDepException {
-        Constructor<?> defaultConstructor = FinderUtils.findAnnotatedConstructor(clazz, Autowired.class);
-        if (defaultConstructor == null) {
+    @SuppressWarnings("try")
+    private void invokeBeanMethod(Object configuration, ComponentInjector.MethodInjector beanMethod) throws InvocationTargetException,
+            IllegalAccessException, InstantiationException, NoSuchMethodException, IoCBeanNotFound, IoCCircularDepException {
+        Method method = beanMethod.getMethod();
+        Object beanInstance;
+        List<Object> injected = new ArrayList<>();
+        try (StartupRecorder.Span ignored = recorder.beanMethod(method.getReturnType(), getBeanName(method))) {
+            beanInstance = beanMethod.invoke(configuration, getParameters(beanMethod.getDependencies(), injected));
+        }
+        beanContainer.putBean(method.getReturnType(), beanInstance, getBeanName(method));
+        onRegister(method.getReturnType(), getBeanName(method), beanInstance, configuration.getClass(), injected);
+    }
+
+    @SuppressWarnings("try")
+    private Object createBean(Class<?> clazz) throws InvocationTargetException, IllegalAccessException,
+            InstantiationException, NoSuchMethodException, IoCBeanNotFound, IoCCircularDepException {
+        Object earlyReference = creationRegistry.getEarlyReference(clazz);
+        if (earlyReference != null) return earlyReference;
+        circularDetector.enter(clazz);
+        try {
+            CreationRegistry.Creation creation = creationRegistry.begin(clazz);
+            if (!creation.isOwnedByCurrentThread()) {
+                try (StartupRecorder.Span ignored = recorder.await(clazz)) {
+                    return creationRegistry.await(creation);
+                }
+            }
             try {
-                defaultConstructor = clazz.getConstructors()[0];
+                Object instance = newInstanceWrapper(clazz, creation);
+                creationRegistry.complete(creation, instance);
+                return instance;
             } catch (Throwable throwable) {
-                try {
-                    defaultConstructor = clazz.getConstructor();
-                } catch (NoSuchMethodException e) {
-                    throw new IoCException("There is no default constructor in class " + clazz.getName());
-                }
+                creationRegistry.fail(creation, throwable);
+                throw throwable;
             }
-            defaultConstructor.setAccessible(true);
+        } finally {
+            circularDetector.exit(clazz);
+        }
+    }
+
+    /**
+     * Creates and wires the bean, publishing it once its fields, setters and synchronous {@code @PostConstruct}
+     * methods are done; until then only the creating thread sees it, through the creation.
+     */
+    @SuppressWarnings("try")
+    private Object newInstanceWrapper(Class<?> clazz, CreationRegistry.Creation creation) throws InvocationTargetException,
+            IllegalAccessException, InstantiationException, NoSuchMethodException, IoCBeanNotFound, IoCCircularDepException {
+        if (beanContainer.containsBean(clazz)) {
+            return beanContainer.getBean(clazz);
         }
-        Object[] parameters = getParameters(defaultConstructor.getParameterCount(), defaultConstructor.getParameters(), defaultConstructor.getParameterTypes());
-        Object instance = defaultConstructor.newInstance(parameters);
-        FinderUtils.findMethods(clazz, PostConstruct.class).forEach(post -> {
-            if (post.getParameterCount() > 0) {
-                new IoCException("Method " + post + " must not take parameters").printStackTrace();
-                return;
+
+        try (StartupRecorder.Span ignored = recorder.creation(clazz)) {
+            List<Object> injected = new ArrayList<>();
+            Object instance = newInstance(clazz, injected);
+            creation.expose(instance);
+            try (StartupRecorder.Span injection = recorder.injection(clazz)) {
+                fieldInject(clazz, instance, injected);
+                setterInject(clazz, instance, injected);
             }
-            try {
-                post.invoke(instance);
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                e.printStackTrace();
+            ComponentInjector.MethodInjector[] postConstructs = injector(clazz).getPostConstructs();
+            if (postConstructs.length > 0) {
+                try (StartupRecorder.Span postConstruct = recorder.postConstruct(clazz)) {
+                    ForkJoinPool pool = holder.getInstantiationPool();
+                    lifecycle.postConstruct(instance, postConstructs, pool == null ? ForkJoinPool.commonPool() : pool);
+                }
             }
-        });
-        return instance;
+            beanContainer.putBean(clazz, instance);
+            onRegister(clazz, clazz.getName(), instance, clazz, injected);
+            return instance;
+        }
     }
 
-    private Object[] getParameters(int parameterCount, Parameter[] params, Class<?>[] types) throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException, IoCBeanNotFound, IoCCircularDepException {
-        Object[] parameters = new Object[parameterCount];
+    @SuppressWarnings("try")
+    private Object newInstance(Class<?> clazz, List<Object> injected) throws IllegalAccessException,
+            InstantiationException, InvocationTargetException, NoSuchMethodException,
+            IoCBeanNotFound, IoCCircularDepException {
+        ComponentInjector injector = injector(clazz);
+        Object[] parameters = getParameters(injector.getConstructorDependencies(), injected);
+        try (StartupRecorder.Span ignored = recorder.construction(clazz)) {
+            return injector.newInstance(parameters);
+        }
+    }
+
+    /**
+     * Resolves the dependencies, adding the beans handed over eagerly to {@code injected}.
+     */
+    private Object[] getParameters(ComponentInjector.Dependency[] dependencies, List<Object> injected) throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException, IoCBeanNotFound, IoCCircularDepException {
+        if (dependencies.length == 0) return NO_ARGUMENTS;
+        Object[] parameters = new Object[dependencies.length];
         for (int i = 0; i < parameters.length; i++) {
-            String qualifier = params[i].isAnnotationPresent(Qualifier.class) ?
-                    params[i].getAnnotation(Qualifier.class).value() : null;
-            Object depInstance = _getBean(types[i],
-                    types[i].getName(), qualifier, true);
-            parameters[i] = depInstance;
+            parameters[i] = resolve(dependencies[i]);
+            addInjected(dependencies[i], parameters[i], injected);
         }
         return parameters;
     }
 
-    private void setterInject(Class<?> clazz, Object classInstance) throws IllegalAccessException,
+    private static void addInjected(ComponentInjector.Dependency dependency, Object value, List<Object> injected) {
+        switch (dependency.getKind()) {
+            case INSTANCE -> injected.add(value);
+            case OPTIONAL -> ((Optional<?>) value).ifPresent(injected::add);
+            case LIST -> injected.addAll((List<?>) value);
+            case MAP -> injected.addAll(((Map<?, ?>) value).values());
+            default -> {
+                // resolved on first use, possibly after the bean is gone
+            }
+        }
+    }
+
+    private Object resolve(ComponentInjector.Dependency dependency) throws InstantiationException, IllegalAccessException,
+            NoSuchMethodException, InvocationTargetException, IoCBeanNotFound, IoCCircularDepException {
+        return switch (dependency.getKind()) {
+            case INSTANCE -> _getBean(dependency.getType(), dependency.getName(), dependency.getQualifier(), true);
+            case PROXY -> lazyReference(dependency).asProxy(dependency.getType());
+            case SUPPLIER -> lazyReference(dependency);
+            case OPTIONAL -> isAvailable(dependency.getType()) ?
+                    Optional.of(_getBean(dependency.getType(), dependency.getName(), dependency.getQualifier(), true)) : Optional.empty();
+            case LIST -> List.of(collectBeans(dependency.getType()).values().toArray());
+            case MAP -> Collections.unmodifiableMap(collectBeans(dependency.getType()));
+        };
+    }
+
+    /**
+     * Whether this context or one of its parents has, or can create, a bean of the type.
+     */
+    private boolean isAvailable(Class<?> type) {
+        boolean available = type.isInterface() ? !implementationContainer.getImplementationClasses(type).isEmpty() :
+                beanContainer.containsBean(type) || type.isAnnotationPresent(Component.class);
+        return available || (parent != null && parent.isAvailable(type));
+    }
+
+    /**
+     * Every bean of the type from the parents and this context, in registration order, by qualifier or by bean name
+     * for beans without one. Components that are not created yet are created; a bean of this context replaces a bean
+     * of a parent registered under the same name.
+     */
+    private Map<String, Object> collectBeans(Class<?> type) throws InstantiationException, IllegalAccessException,
+            NoSuchMethodException, InvocationTargetException, IoCBeanNotFound, IoCCircularDepException {
+        Map<String, Object> beans = parent == null ? new LinkedHashMap<>() : parent.collectBeans(type);
+        Set<Class<?>> classes = type.isInterface() ? implementationContainer.getImplementationClasses(type) : Set.of(type);
+        for (Class<?> implementationClass : classes) {
+            if (!beanContainer.containsBean(implementationClass)) {
+                if (implementationClass.isInterface() || !implementationClass.isAnnotationPresent(Component.class)
+                        || (parent != null && parent.hasBean(implementationClass))) continue;
+                createBean(implementationClass);
+            }
+            Map<String, Object> named = beanContainer.getBeans().get(implementationClass);
+            String qualifier = FinderUtils.getMetadata(implementationClass).getQualifier();
+            named.forEach((name, bean) -> beans.put(qualifier != null && named.size() == 1 ? qualifier : name, bean));
+        }
+        return beans;
+    }
+
+    private LazyReference<Object> lazyReference(ComponentInjector.Dependency dependency) {
+        return new LazyReference<>(() -> _getBean(dependency.getType(), dependency.getName(), dependency.getQualifier(), true));
+    }
+
+    private void setterInject(Class<?> clazz, Object classInstance, List<Object> injected) throws IllegalAccessException,
             InvocationTargetException, NoSuchMethodException, InstantiationException, IoCBeanNotFound, IoCCircularDepException {
-        Set<Method> methods = FinderUtils.findMethods(clazz, Autowired.class);
-        for (Method method : methods) {
-            Object[] parameters = getParameters(method.getParameterCount(), method.getParameters(), method.getParameterTypes());
+        for (ComponentInjector.MethodInjector method : injector(clazz).getSetters()) {
+            Object[] parameters = getParameters(method.getDependencies(), injected);
             method.invoke(classInstance, parameters);
         }
     }
 
-    private void fieldInject(Class<?> clazz, Object classInstance) throws IllegalAccessException,
+    private void fieldInject(Class<?> clazz, Object classInstance, List<Object> injected) throws IllegalAccessException,
             InstantiationException, InvocationTargetException, NoSuchMethodException, IoCBeanNotFound, IoCCircularDepException {
-        Set<Field> fields = FinderUtils.findFields(clazz, Autowired.class);
-        for (Field field : fields) {
-            String qualifier = field.isAnnotationPresent(Qualifier.class) ? field.getAnnotation(Qualifier.class).value() : null;
-            Object fieldInstance = _getBean(field.getType(), field.getName(), qualifier, true);
-            field.set(classInstance, fieldInstance);
+        for (ComponentInjector.FieldInjector field : injector(clazz).getFields()) {
+            Object value = resolve(field.getDependency());
+            addInjected(field.getDependency(), value, injected);
+            field.inject(classInstance, value);
         }
     }
 
+    /**
+     * Evaluates conditions against this context, the properties of the holder and the classes of {@code loader}.
+     */
+    @RequiredArgsConstructor
+    private class Conditions implements Condition.Environment {
+        private final ClassLoader loader;
+        /**
+         * Names of the types the classes accepted so far provide, beans in all but registration.
+         */
+        private final Set<String> providedTypes;
+
+        private Conditions(ClassLoader loader) {
+            this(loader, Set.of());
+        }
+
+        @Override
+        public boolean isPresent(String className) {
+            return loader.getResource(className.replace('.', '/') + ".class") != null;
+        }
+
+        @Override
+        public boolean hasBean(String typeName) {
+            return providedTypes.contains(typeName) || IoC.this.hasBean(typeName);
+        }
+
+        @Override
+        public String getProperty(String name) {
+            return holder.getProperty(name);
+        }
+    }
+
+    /**
+     * The context as seen by a generated {@link ContextWiring}.
+     */
+    private class Wiring implements ContextWiring.Context {
+        @Override
+        public void implementation(Class<?> implementationClass, Class<?> interfaceClass, String qualifier) {
+            implementationContainer.putImplementationClass(implementationClass, interfaceClass, qualifier);
+        }
+
+        @Override
+        public <B> B resolve(Class<B> type, String name, String qualifier) throws Exception {
+            return type.cast(_getBean(type, name, qualifier, true));
+        }
+
+        @Override
+        public <B> B create(Class<B> type) throws Exception {
+            return type.cast(createBean(type));
+        }
+
+        @Override
+        public <B> B configuration(Class<B> type) throws Exception {
+            return type.cast(newConfiguration(type));
+        }
+
+        @Override
+        public void lazy(Class<?> type) {
+            beanIndex.addDeferred(IoC.this, type, type.getName(), () -> getBean(type));
+        }
+
+        @Override
+        public void register(Class<?> type, String name, Object bean, Class<?> origin, boolean callbacks, Object... dependencies) {
+            beanContainer.putBean(type, bean, name);
+            onRegister(type, name, bean, origin, Arrays.asList(dependencies), callbacks);
+        }
+
+        @Override
+        public void track(CompletionStage<?> stage, String method) {
+            lifecycle.track(stage, method);
+        }
+    }
+
+    private static ComponentInjector injector(Class<?> clazz) {
+        return ComponentInjector.of(clazz);
+    }
+
     @SuppressWarnings("unchecked")
     private <T> T _getBean(Class<T> interfaceClass) throws InstantiationException, IllegalAccessException,
             InvocationTargetException, NoSuchMethodException, IoCBeanNotFound, IoCCircularDepException {
         return (T) _getBean(interfaceClass, null, null, false);
     }
 
+    /**
+     * Whether this context or a parent has a bean or an implementation of the type, compared by name.
+     */
+    private boolean hasBean(String typeName) {
+        for (Class<?> type : beanContainer.getBeans().keySet()) {
+            if (type.getName().equals(typeName) && beanContainer.containsBean(type)) return true;
+        }
+        return implementationContainer.contains(typeName) || (parent != null && parent.hasBean(typeName));
+    }
+
+    private boolean hasBean(Class<?> clazz) {
+        return beanContainer.containsBean(clazz) || (parent != null && parent.hasBean(clazz));
+    }
+
     private <T> Object _getBean(Class<T> interfaceClass, String fieldName, String qualifier, boolean createIfNotFound) throws
             InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException,
             IoCBeanNotFound, IoCCircularDepException {
+        if (parent != null && interfaceClass.isInterface() && implementationContainer.getImplementationClasses(interfaceClass).isEmpty()) {
+            return parent._getBean(interfaceClass, fieldName, qualifier, false);
+        }
         Class<?> implementationClass = interfaceClass.isInterface() ?
                 implementationContainer.getImplementationClass(interfaceClass, fieldName, qualifier) : interfaceClass;
+        recorder.dependency(implementationClass, qualifier);
         if (beanContainer.containsBean(implementationClass)) {
             if (qualifier != null) {
                 return beanContainer.getBean(implementationClass, qualifier);
             }
             return beanContainer.getBean(implementationClass);
         }
-        if (createIfNotFound) {
-            synchronized (beanContainer) {
-                return newInstanceWrapper(implementationClass);
-            }
+        if (parent != null && parent.hasBean(implementationClass)) {
+            return parent._getBean(implementationClass, fieldName, qualifier, false);
+        }
+        if (createIfNotFound || implementationClass.isAnnotationPresent(Lazy.class) || creationRegistry.isCreating(implementationClass)) {
+            return createBean(implementationClass);
         } else {
             throw new IoCBeanNotFound("Cannot found bean for " + interfaceClass.getName());
         }
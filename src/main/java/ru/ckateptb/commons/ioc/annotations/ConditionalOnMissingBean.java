@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * On a component or configuration: the class is skipped when the context or one of its parents already has a bean
+ * or an implementation of one of the listed types, of the annotated class itself when none is listed. The condition
+ * is evaluated after the classes of the package without it, so it sees the components and {@code @Bean} methods of
+ * its own package as well as predefined beans, earlier packages and parents; classes of the package carrying it are
+ * evaluated in the order of their binary names, each seeing those accepted before it, so the outcome does not
+ * depend on how the classes were found.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ConditionalOnMissingBean {
+    Class<?>[] value() default {};
+
+    /**
+     * Binary names of the types.
+     */
+    String[] name() default {};
+}
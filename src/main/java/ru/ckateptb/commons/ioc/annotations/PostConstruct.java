@@ -22,7 +22,15 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Runs a method without parameters of a component once its fields and setters are injected. A method returning a
+ * {@link java.util.concurrent.CompletionStage CompletionStage} may finish its work later, an {@code async} method is
+ * invoked on the instantiation pool of the holder rather than on the creating thread, on the common pool when the
+ * holder has none. {@code IoC#whenReady()} completes once every such method has completed; an exception thrown by a
+ * synchronous method fails the creation of the component.
+ */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface PostConstruct {
+    boolean async() default false;
 }
@@ -21,7 +21,13 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Runs a method without parameters of a bean after {@code delay}, then every {@code period} when it is positive.
+ * Asynchronous tasks run on virtual threads where available, the others on the executor returned by
+ * {@code IoCHolder#getMainThreadExecutor()}.
+ */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface Scheduled {
@@ -30,4 +36,10 @@ public @interface Scheduled {
     long period() default 0;
 
     boolean async() default false;
+
+    /**
+     * Unit of {@code delay} and {@code period}. Milliseconds by default, the unit of the declarations written before
+     * the attribute existed; the timer ticks every 10 ms, so shorter delays are rounded up to a tick.
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
 }
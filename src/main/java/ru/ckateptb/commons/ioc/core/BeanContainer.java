@@ -19,29 +19,92 @@ package ru.ckateptb.commons.ioc.core;
 
 import ru.ckateptb.commons.ioc.exceptions.IoCException;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
-import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
+/**
+ * Beans by type and name, the names of a type in their natural order.
+ * <p>
+ * While the context is being initialized the beans of a type are kept in a concurrent sorted map. {@link #freeze()}
+ * compacts each of them into an immutable sorted map, so lookups never lock; a bean registered after that replaces
+ * the map of its type with a modified copy and leaves the other types alone.
+ */
 public class BeanContainer {
-    public final Map<Class<?>, Map<String, Object>> beans = new HashMap<>(10);
+    private final Map<Class<?>, Map<String, Object>> table = new ConcurrentHashMap<>(10);
+    /**
+     * Read-only view of the beans, kept for code written against the mutable map of earlier versions; register
+     * beans through {@link #putBean(Class, Object, String)}.
+     */
+    public final Map<Class<?>, Map<String, Object>> beans = Collections.unmodifiableMap(table);
+    private volatile boolean frozen;
 
     public void putBean(Class<?> clazz, Object instance) {
         putBean(clazz, instance, clazz.getName());
     }
 
-    public void putBean(Class<?> clazz, Object instance, String name) {
-        Map<String, Object> map = beans.computeIfAbsent(clazz, k -> new TreeMap<>());
-        map.putIfAbsent(name, instance);
+    public synchronized void putBean(Class<?> clazz, Object instance, String name) {
+        if (!frozen) {
+            table.computeIfAbsent(clazz, k -> new ConcurrentSkipListMap<>()).putIfAbsent(name, instance);
+            return;
+        }
+        Map<String, Object> map = table.get(clazz);
+        if (map != null && map.containsKey(name)) return;
+        TreeMap<String, Object> named = map == null ? new TreeMap<>() : new TreeMap<>(map);
+        named.put(name, instance);
+        table.put(clazz, Collections.unmodifiableSortedMap(named));
+    }
+
+    public synchronized void freeze() {
+        if (frozen) return;
+        table.replaceAll((clazz, map) -> Collections.unmodifiableSortedMap(new TreeMap<>(map)));
+        frozen = true;
+    }
+
+    /**
+     * Drops the instance under every class and name it was registered with.
+     */
+    public synchronized void removeBean(Object instance) {
+        for (Map.Entry<Class<?>, Map<String, Object>> entry : table.entrySet()) {
+            if (entry.getValue().values().stream().noneMatch(bean -> bean == instance)) continue;
+            if (!frozen) {
+                entry.getValue().values().removeIf(bean -> bean == instance);
+                continue;
+            }
+            TreeMap<String, Object> named = new TreeMap<>(entry.getValue());
+            named.values().removeIf(bean -> bean == instance);
+            entry.setValue(Collections.unmodifiableSortedMap(named));
+        }
+    }
+
+    /**
+     * Drops every bean, the container stays usable.
+     */
+    public synchronized void clear() {
+        table.clear();
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public Map<Class<?>, Map<String, Object>> getBeans() {
+        return beans;
     }
 
+    /**
+     * Whether any bean is registered for the class, whatever its name.
+     */
     public boolean containsBean(Class<?> clazz) {
-        return containsBean(clazz, clazz.getName());
+        Map<String, Object> map = table.get(clazz);
+        return map != null && !map.isEmpty();
     }
 
     public boolean containsBean(Class<?> clazz, String name) {
-        return Optional.ofNullable(beans.get(clazz)).map(map -> map.containsKey(name)).orElse(false);
+        Map<String, Object> map = table.get(clazz);
+        return map != null && map.containsKey(name);
     }
 
     public Object getBean(Class<?> clazz) {
@@ -49,7 +112,7 @@ public class BeanContainer {
     }
 
     public Object getBean(Class<?> clazz, String name) {
-        Map<String, Object> map = beans.get(clazz);
+        Map<String, Object> map = table.get(clazz);
 
         if (map == null || map.size() == 0) {
             throw new IoCException("No bean found for class " + clazz);
@@ -70,4 +133,4 @@ public class BeanContainer {
 
         return bean;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import ru.ckateptb.commons.ioc.annotations.Qualifier;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Beans of every context by type and qualifier, behind the static {@code IoC.get} lookups. A bean is indexed under
+ * its class, the type it was registered for and the interfaces its class declares, the types
+ * {@link ImplementationContainer} resolves, by its bean name, the {@link Qualifier} of its class and the simple
+ * class name.
+ * <p>
+ * Everything a lookup needs is kept up to date when a bean is added, so a lookup is one hash probe plus a field read
+ * and a miss allocates nothing. Writes are serialized; adding a bean to a type shared by many beans only appends to
+ * it, removing beans rebuilds the lookup tables of the types they had.
+ * <p>
+ * Beans that are not created yet, such as {@code @Lazy} components, can be added as deferred: the first lookup
+ * creates them and the created bean takes the place of the deferred entry.
+ */
+public class BeanIndex {
+    private final Map<Class<?>, Slot> slots = new ConcurrentHashMap<>();
+
+    public synchronized void add(Object owner, Class<?> registeredType, String name, Object bean) {
+        add(owner, registeredType, bean.getClass(), name, bean);
+    }
+
+    public synchronized void addDeferred(Object owner, Class<?> clazz, String name, Supplier<?> factory) {
+        add(owner, clazz, clazz, name, new Deferred(clazz, factory));
+    }
+
+    private void add(Object owner, Class<?> registeredType, Class<?> clazz, String name, Object bean) {
+        Entry entry = new Entry(owner, name, qualifiers(clazz, name), bean);
+        Set<Class<?>> types = new LinkedHashSet<>();
+        types.add(registeredType);
+        types.add(clazz);
+        types.addAll(Arrays.asList(clazz.getInterfaces()));
+        for (Class<?> type : types) {
+            slots.computeIfAbsent(type, Slot::new).add(entry);
+        }
+    }
+
+    /**
+     * Drops every bean added by the owner.
+     */
+    public synchronized void removeAll(Object owner) {
+        slots.values().removeIf(slot -> slot.remove(entry -> entry.owner == owner));
+    }
+
+    /**
+     * Drops the beans added by the owner that match the filter, deferred beans are matched by their class.
+     */
+    public synchronized void remove(Object owner, Predicate<Object> filter) {
+        slots.values().removeIf(slot -> slot.remove(entry -> entry.owner == owner &&
+                filter.test(entry.bean instanceof Deferred deferred ? deferred.clazz : entry.bean)));
+    }
+
+    /**
+     * A bean of the type, {@code null} when there is none. Of several beans the one registered under the name of
+     * the type wins, otherwise the one added first.
+     */
+    public Object get(Class<?> type) {
+        Slot slot = slots.get(type);
+        return slot == null ? null : resolve(slot.primary);
+    }
+
+    /**
+     * The bean of the type matching the qualifier, {@code null} when there is none. Without a qualifier the bean is
+     * looked up like {@link #get(Class)}.
+     */
+    public Object get(Class<?> type, String qualifier) {
+        Slot slot = slots.get(type);
+        if (slot == null) return null;
+        return resolve(qualifier == null ? slot.primary : slot.named.get(qualifier));
+    }
+
+    private static Object resolve(Object bean) {
+        return bean instanceof Deferred deferred ? deferred.factory.get() : bean;
+    }
+
+    private static Set<String> qualifiers(Class<?> clazz, String name) {
+        Set<String> qualifiers = new LinkedHashSet<>();
+        if (name != null) qualifiers.add(name);
+        Qualifier qualifier = clazz.getAnnotation(Qualifier.class);
+        if (qualifier != null && !qualifier.value().isEmpty()) qualifiers.add(qualifier.value());
+        qualifiers.add(clazz.getSimpleName());
+        qualifiers.add(clazz.getSimpleName().toLowerCase(Locale.ROOT));
+        return qualifiers;
+    }
+
+    private record Entry(Object owner, String name, Set<String> qualifiers, Object bean) {
+    }
+
+    private record Deferred(Class<?> clazz, Supplier<?> factory) {
+    }
+
+    /**
+     * Beans of one type. The entries are only touched under the monitor of the index, lookups read the volatile
+     * fields.
+     */
+    private static class Slot {
+        private final Class<?> type;
+        private final List<Entry> entries = new ArrayList<>();
+        private final Set<Object> beans = Collections.newSetFromMap(new IdentityHashMap<>());
+        private int deferred;
+        private boolean primaryNamed;
+        private volatile Object primary;
+        private volatile Map<String, Object> named = new ConcurrentHashMap<>();
+
+        private Slot(Class<?> type) {
+            this.type = type;
+        }
+
+        private void add(Entry entry) {
+            if (!beans.add(entry.bean)) return;
+            if (deferred > 0 && !(entry.bean instanceof Deferred)) {
+                for (int i = 0; i < entries.size(); i++) {
+                    Entry existing = entries.get(i);
+                    if (existing.bean instanceof Deferred && existing.owner == entry.owner && existing.name.equals(entry.name)) {
+                        entries.set(i, entry);
+                        beans.remove(existing.bean);
+                        deferred--;
+                        rebuild();
+                        return;
+                    }
+                }
+            }
+            entries.add(entry);
+            if (entry.bean instanceof Deferred) deferred++;
+            for (String qualifier : entry.qualifiers) {
+                named.putIfAbsent(qualifier, entry.bean);
+            }
+            boolean namedAfterType = type.getName().equals(entry.name);
+            if (primary == null || (namedAfterType && !primaryNamed)) {
+                primary = entry.bean;
+                primaryNamed = namedAfterType;
+            }
+        }
+
+        /**
+         * Removes the matching entries, {@code true} when the slot is empty afterwards.
+         */
+        private boolean remove(Predicate<Entry> filter) {
+            boolean removed = false;
+            for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext(); ) {
+                Entry entry = iterator.next();
+                if (!filter.test(entry)) continue;
+                iterator.remove();
+                beans.remove(entry.bean);
+                if (entry.bean instanceof Deferred) deferred--;
+                removed = true;
+            }
+            if (removed) rebuild();
+            return entries.isEmpty();
+        }
+
+        private void rebuild() {
+            Map<String, Object> byName = new ConcurrentHashMap<>();
+            Object first = null;
+            boolean firstNamed = false;
+            for (Entry entry : entries) {
+                for (String qualifier : entry.qualifiers) {
+                    byName.putIfAbsent(qualifier, entry.bean);
+                }
+                boolean namedAfterType = type.getName().equals(entry.name);
+                if (first == null || (namedAfterType && !firstNamed)) {
+                    first = entry.bean;
+                    firstNamed = namedAfterType;
+                }
+            }
+            named = byName;
+            primary = first;
+            primaryNamed = firstNamed;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Handle of a bean lookup by type and optional qualifier, for {@code IoC#get(BeanKey)}. Keys are interned: equal
+ * type and qualifier give the same key, and every context a key is used with gives it a slot of its own
+ * {@link BeanSlots}, where the context keeps the bean the key resolved to.
+ * <p>
+ * Keys are kept alongside their type in a {@link ClassValue} and do not keep its class loader reachable.
+ */
+@Getter
+public final class BeanKey<T> {
+    private static final ClassValue<Keys> keys = new ClassValue<>() {
+        @Override
+        protected Keys computeValue(Class<?> type) {
+            return new Keys(type);
+        }
+    };
+    private final Class<T> type;
+    /**
+     * Qualifier of the bean, {@code null} to look the type up like {@code IoC#getBean(Class)}.
+     */
+    private final String qualifier;
+    /**
+     * Slot of the key in the context it was used with last, most keys are only ever used with one.
+     */
+    @Getter(AccessLevel.NONE)
+    volatile BeanSlots.Binding binding;
+
+    private BeanKey(Class<T> type, String qualifier) {
+        this.type = type;
+        this.qualifier = qualifier;
+    }
+
+    public static <T> BeanKey<T> of(Class<T> type) {
+        return of(type, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> BeanKey<T> of(Class<T> type, String qualifier) {
+        Keys typeKeys = keys.get(type);
+        return (BeanKey<T>) (qualifier == null ? typeKeys.unqualified :
+                typeKeys.qualified.computeIfAbsent(qualifier, name -> new BeanKey<>(type, name)));
+    }
+
+    @Override
+    public String toString() {
+        return qualifier == null ? type.getName() : type.getName() + "@" + qualifier;
+    }
+
+    private static class Keys {
+        private final BeanKey<?> unqualified;
+        private final Map<String, BeanKey<?>> qualified = new ConcurrentHashMap<>();
+
+        private Keys(Class<?> type) {
+            this.unqualified = new BeanKey<>(type, null);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Beans of one context resolved through {@link BeanKey}s. Every key used with the context gets the next slot of the
+ * context, so the slots stay dense however many contexts and keys there are, and remembers the slot it was given
+ * last; a lookup is a comparison and an array load. Beans are written into their slot in place, the array only
+ * grows by doubling. All beans are dropped at once whenever the beans of the context change, and a resolution racing
+ * with a change is not published.
+ */
+public class BeanSlots {
+    private final Map<BeanKey<?>, Integer> indices = new ConcurrentHashMap<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private volatile AtomicReferenceArray<Object> beans = new AtomicReferenceArray<>(8);
+    private int version;
+
+    /**
+     * The bean resolved for the key, {@code null} when it has not been resolved since the last {@link #clear()}.
+     */
+    public Object get(BeanKey<?> key) {
+        int index = index(key);
+        AtomicReferenceArray<Object> beans = this.beans;
+        return index < beans.length() ? beans.getAcquire(index) : null;
+    }
+
+    /**
+     * Version to pass to {@link #put(BeanKey, Object, int)}, taken before the bean is resolved.
+     */
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    /**
+     * Publishes the bean resolved for the key, unless the slots were cleared since {@code version} was taken.
+     */
+    public synchronized void put(BeanKey<?> key, Object bean, int version) {
+        if (version != this.version) return;
+        int index = index(key);
+        AtomicReferenceArray<Object> beans = this.beans;
+        if (index >= beans.length()) {
+            AtomicReferenceArray<Object> grown = new AtomicReferenceArray<>(Math.max(index + 1, beans.length() * 2));
+            for (int i = 0; i < beans.length(); i++) {
+                grown.setPlain(i, beans.getPlain(i));
+            }
+            this.beans = beans = grown;
+        }
+        beans.setRelease(index, bean);
+    }
+
+    public synchronized void clear() {
+        version++;
+        beans = new AtomicReferenceArray<>(beans.length());
+    }
+
+    /**
+     * Drops the beans and forgets the keys, so a key bound to these slots keeps nothing of a closed context.
+     */
+    public synchronized void close() {
+        clear();
+        indices.clear();
+    }
+
+    private int index(BeanKey<?> key) {
+        Binding binding = key.binding;
+        if (binding != null && binding.slots == this) return binding.index;
+        int index = indices.computeIfAbsent(key, ignored -> nextIndex.getAndIncrement());
+        key.binding = new Binding(this, index);
+        return index;
+    }
+
+    record Binding(BeanSlots slots, int index) {
+    }
+}
@@ -19,18 +19,38 @@ package ru.ckateptb.commons.ioc.core;
 
 import ru.ckateptb.commons.ioc.exceptions.IoCCircularDepException;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.LinkedHashSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Classes the current thread is resolving, outermost first. Entering a class that is already on the stack means it
+ * depends on itself through the classes above it, which is reported with the whole path, e.g. {@code A -> B -> A}.
+ * <p>
+ * The stack lives as long as one resolution and belongs to one thread, so nothing is left behind between
+ * {@code IoC.init} calls. Only bean creation goes through it: once the context is frozen every lookup is answered
+ * by the bean container and the detector is not touched at all.
+ */
 public class CircularDetector {
-    private final Map<Class<?>, Integer> circularDetectMap = new HashMap<>(30);
+    private final ThreadLocal<LinkedHashSet<Class<?>>> resolving = ThreadLocal.withInitial(LinkedHashSet::new);
 
-    public void detect(Class<?> clazz) throws IoCCircularDepException {
-        int circular = circularDetectMap.getOrDefault(clazz, 0);
-        circularDetectMap.put(clazz, circular + 1);
-        // Need to be changed
-        if (circular > 50) {
-            throw new IoCCircularDepException("Circular dependency detected when loading class " + clazz.getName());
+    /**
+     * Pushes the class onto the resolution stack of the current thread. Every successful call must be paired with
+     * {@link #exit(Class)}.
+     */
+    public void enter(Class<?> clazz) throws IoCCircularDepException {
+        LinkedHashSet<Class<?>> stack = resolving.get();
+        if (!stack.add(clazz)) {
+            String path = Stream.concat(stack.stream().dropWhile(type -> type != clazz), Stream.of(clazz))
+                    .map(Class::getName)
+                    .collect(Collectors.joining(" -> "));
+            throw new IoCCircularDepException("Circular dependency detected: " + path);
         }
     }
-}
\ No newline at end of file
+
+    public void exit(Class<?> clazz) {
+        LinkedHashSet<Class<?>> stack = resolving.get();
+        stack.remove(clazz);
+        if (stack.isEmpty()) resolving.remove();
+    }
+}
@@ -0,0 +1,570 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import ru.ckateptb.commons.ioc.exceptions.IoCException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds the top-level classes of a package that carry one of the given annotations without loading any class.
+ * <p>
+ * The jars and directories of the class loader are collected once. The central directory of each jar is listed
+ * once, shared by every scanner while memory allows, and only the {@code .class} entries of the scanned package are
+ * read afterwards; no jar stays open or mapped between scans. Of each class file only the constant pool and the class-level {@code RuntimeVisibleAnnotations}
+ * attribute are parsed; a class whose constant pool does not even mention an annotation is rejected right after
+ * the constant pool. The {@link Condition conditions} of an annotated class are read from the same attribute. Roots
+ * are scanned in parallel on the given executor.
+ */
+public class ClassPathScanner {
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+    private static final Condition.Kind[] CONDITION_KINDS = Condition.Kind.values();
+    private static final String[] CONDITION_DESCRIPTORS = Arrays.stream(CONDITION_KINDS)
+            .map(kind -> descriptor(kind.getAnnotation()))
+            .toArray(String[]::new);
+    // listings of the jars scanned by any context, a jar shared by several contexts is listed once
+    private static final Map<Path, SoftReference<JarListing>> LISTINGS = new ConcurrentHashMap<>();
+    private final ClassLoader classLoader;
+    private final Executor executor;
+    private List<Path> roots;
+
+    /**
+     * @param executor executor scanning the roots, {@code null} to scan them one by one on the calling thread
+     */
+    public ClassPathScanner(ClassLoader classLoader, Executor executor) {
+        this.classLoader = classLoader;
+        this.executor = executor;
+    }
+
+    /**
+     * Names of the top-level classes in the package and its subpackages that pass the filter and are annotated
+     * with at least one of the annotations.
+     */
+    public Set<String> findAnnotatedClasses(String packageName, Predicate<String> filter, Collection<Class<?>> annotations) {
+        return findConditionalClasses(packageName, filter, annotations).keySet();
+    }
+
+    /**
+     * The classes found like {@link #findAnnotatedClasses(String, Predicate, Collection)}, each with its conditions.
+     */
+    public Map<String, List<Condition>> findConditionalClasses(String packageName, Predicate<String> filter,
+                                                               Collection<Class<?>> annotations) {
+        Set<String> descriptors = annotations.stream()
+                .map(ClassPathScanner::descriptor)
+                .collect(Collectors.toSet());
+        String packagePath = packageName.isEmpty() ? "" : packageName.replace('.', '/') + "/";
+        List<CompletableFuture<Map<String, List<Condition>>>> scans = new ArrayList<>();
+        for (Path root : getRoots()) {
+            scans.add(executor == null ?
+                    CompletableFuture.completedFuture(scan(root, packagePath, filter, descriptors)) :
+                    CompletableFuture.supplyAsync(() -> scan(root, packagePath, filter, descriptors), executor));
+        }
+        Map<String, List<Condition>> classes = new LinkedHashMap<>();
+        for (CompletableFuture<Map<String, List<Condition>>> scan : scans) {
+            scan.join().forEach(classes::putIfAbsent);
+        }
+        return classes;
+    }
+
+    private static String descriptor(Class<?> annotation) {
+        return "L" + annotation.getName().replace('.', '/') + ";";
+    }
+
+    /**
+     * Jars and directories of the class loader and its parents, plus the application class path when the system
+     * class loader is one of them.
+     */
+    public synchronized List<Path> getRoots() {
+        if (roots != null) return roots;
+        Set<Path> found = new LinkedHashSet<>();
+        for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+            if (loader instanceof URLClassLoader urlClassLoader) {
+                for (URL url : urlClassLoader.getURLs()) {
+                    if (!"file".equals(url.getProtocol())) continue;
+                    try {
+                        found.add(Path.of(url.toURI()));
+                    } catch (URISyntaxException | IllegalArgumentException ignored) {
+                        // not a local file
+                    }
+                }
+            }
+            if (loader == ClassLoader.getSystemClassLoader()) {
+                for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+                    if (!entry.isEmpty()) found.add(Path.of(entry));
+                }
+            }
+        }
+        roots = found.stream()
+                .map(path -> path.toAbsolutePath().normalize())
+                .filter(Files::exists)
+                .distinct()
+                .toList();
+        return roots;
+    }
+
+    private Map<String, List<Condition>> scan(Path root, String packagePath, Predicate<String> filter, Set<String> descriptors) {
+        try {
+            return Files.isDirectory(root) ?
+                    scanDirectory(root, packagePath, filter, descriptors) :
+                    JarListing.of(root).scan(root, packagePath, filter, descriptors);
+        } catch (IOException | UncheckedIOException e) {
+            new IoCException("Cannot scan " + root + ": " + e.getMessage()).printStackTrace();
+            return Collections.emptyMap();
+        }
+    }
+
+    private static Map<String, List<Condition>> scanDirectory(Path root, String packagePath, Predicate<String> filter,
+                                                              Set<String> descriptors) throws IOException {
+        Path directory = root.resolve(packagePath);
+        if (!Files.isDirectory(directory)) return Collections.emptyMap();
+        Map<String, List<Condition>> classes = new LinkedHashMap<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String entryName = root.relativize(file).toString().replace(File.separatorChar, '/');
+                String className = toClassName(entryName);
+                if (className == null || !filter.test(className)) continue;
+                List<Condition> conditions = readConditions(ByteBuffer.wrap(Files.readAllBytes(file)), descriptors);
+                if (conditions != null) classes.put(className, conditions);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Class name of a top-level class file entry, {@code null} for anything else.
+     */
+    private static String toClassName(String entryName) {
+        if (!entryName.endsWith(CLASS_SUFFIX) || entryName.indexOf('$') >= 0) return null;
+        String className = entryName.substring(0, entryName.length() - CLASS_SUFFIX.length()).replace('/', '.');
+        return className.endsWith("package-info") || className.endsWith("module-info") ? null : className;
+    }
+
+    /**
+     * Conditions of the class when the class file carries one of the annotation descriptors as a class-level runtime
+     * annotation, otherwise {@code null}. A malformed class file is treated as not annotated.
+     */
+    static List<Condition> readConditions(ByteBuffer buffer, Set<String> descriptors) {
+        try {
+            return parse(buffer.order(ByteOrder.BIG_ENDIAN), descriptors);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static List<Condition> parse(ByteBuffer buffer, Set<String> descriptors) {
+        if (buffer.getInt() != 0xCAFEBABE) return null;
+        skip(buffer, 4);
+        int constantPoolCount = Short.toUnsignedInt(buffer.getShort());
+        // offsets of the Utf8 and Integer constants, strings are only compared in place
+        int[] constants = new int[constantPoolCount];
+        boolean mentioned = false;
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = Byte.toUnsignedInt(buffer.get());
+            switch (tag) {
+                case 1 -> {
+                    constants[i] = buffer.position();
+                    if (!mentioned) mentioned = matches(buffer, buffer.position(), descriptors);
+                    skip(buffer, 2 + Short.toUnsignedInt(buffer.getShort(buffer.position())));
+                }
+                case 3 -> {
+                    constants[i] = buffer.position();
+                    skip(buffer, 4);
+                }
+                case 7, 8, 16, 19, 20 -> skip(buffer, 2);
+                case 15 -> skip(buffer, 3);
+                case 4, 9, 10, 11, 12, 17, 18 -> skip(buffer, 4);
+                case 5, 6 -> {
+                    skip(buffer, 8);
+                    i++;
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        if (!mentioned) return null;
+        skip(buffer, 6);
+        skip(buffer, 2 * Short.toUnsignedInt(buffer.getShort()));
+        for (int members = 0; members < 2; members++) {
+            int count = Short.toUnsignedInt(buffer.getShort());
+            for (int i = 0; i < count; i++) {
+                skip(buffer, 6);
+                skipAttributes(buffer);
+            }
+        }
+        int attributes = Short.toUnsignedInt(buffer.getShort());
+        for (int i = 0; i < attributes; i++) {
+            int name = constants[Short.toUnsignedInt(buffer.getShort())];
+            int length = buffer.getInt();
+            if (!equals(buffer, name, RUNTIME_VISIBLE_ANNOTATIONS)) {
+                skip(buffer, length);
+                continue;
+            }
+            boolean annotated = false;
+            List<Condition> conditions = new ArrayList<>(0);
+            int annotations = Short.toUnsignedInt(buffer.getShort());
+            for (int a = 0; a < annotations; a++) {
+                int type = constants[Short.toUnsignedInt(buffer.getShort())];
+                Condition.Kind kind = conditionKind(buffer, type);
+                if (kind != null) {
+                    conditions.add(readCondition(buffer, kind, constants));
+                    continue;
+                }
+                if (matches(buffer, type, descriptors)) annotated = true;
+                skipElementValuePairs(buffer);
+            }
+            return annotated ? conditions : null;
+        }
+        return null;
+    }
+
+    private static Condition.Kind conditionKind(ByteBuffer buffer, int type) {
+        for (int i = 0; i < CONDITION_KINDS.length; i++) {
+            if (equals(buffer, type, CONDITION_DESCRIPTORS[i])) return CONDITION_KINDS[i];
+        }
+        return null;
+    }
+
+    /**
+     * Reads the element values of a condition annotation into the values of the condition, defaults included.
+     */
+    private static Condition readCondition(ByteBuffer buffer, Condition.Kind kind, int[] constants) {
+        Map<String, List<String>> elements = new HashMap<>();
+        int pairs = Short.toUnsignedInt(buffer.getShort());
+        for (int i = 0; i < pairs; i++) {
+            String element = string(buffer, constants[Short.toUnsignedInt(buffer.getShort())]);
+            List<String> values = new ArrayList<>();
+            readElementValue(buffer, constants, values);
+            elements.put(element, values);
+        }
+        List<String> values = new ArrayList<>();
+        if (kind == Condition.Kind.ON_PROPERTY) {
+            values.add(elements.getOrDefault("name", List.of("")).get(0));
+            values.add(elements.getOrDefault("havingValue", List.of("")).get(0));
+            values.add(elements.getOrDefault("matchIfMissing", List.of("false")).get(0));
+        } else {
+            values.addAll(elements.getOrDefault("value", List.of()));
+            values.addAll(elements.getOrDefault("name", List.of()));
+        }
+        return new Condition(kind, values);
+    }
+
+    /**
+     * Adds the strings, class names and booleans of an element value, skips anything else.
+     */
+    private static void readElementValue(ByteBuffer buffer, int[] constants, List<String> values) {
+        char tag = (char) buffer.get();
+        switch (tag) {
+            case 's' -> values.add(string(buffer, constants[Short.toUnsignedInt(buffer.getShort())]));
+            case 'c' -> {
+                String descriptor = string(buffer, constants[Short.toUnsignedInt(buffer.getShort())]);
+                values.add(descriptor.substring(1, descriptor.length() - 1).replace('/', '.'));
+            }
+            case 'Z' -> values.add(Boolean.toString(buffer.getInt(constants[Short.toUnsignedInt(buffer.getShort())]) != 0));
+            case '[' -> {
+                int count = Short.toUnsignedInt(buffer.getShort());
+                for (int i = 0; i < count; i++) {
+                    readElementValue(buffer, constants, values);
+                }
+            }
+            default -> skipElementValue(buffer, tag);
+        }
+    }
+
+    private static String string(ByteBuffer buffer, int utf8) {
+        if (utf8 == 0) throw new IllegalArgumentException("Not a Utf8 constant");
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort(utf8))];
+        buffer.get(utf8 + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean matches(ByteBuffer buffer, int utf8, Set<String> descriptors) {
+        for (String descriptor : descriptors) {
+            if (equals(buffer, utf8, descriptor)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compares the Utf8 constant at the offset with an ASCII string.
+     */
+    private static boolean equals(ByteBuffer buffer, int utf8, String value) {
+        if (utf8 == 0 || Short.toUnsignedInt(buffer.getShort(utf8)) != value.length()) return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (buffer.get(utf8 + 2 + i) != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static void skipAttributes(ByteBuffer buffer) {
+        int count = Short.toUnsignedInt(buffer.getShort());
+        for (int i = 0; i < count; i++) {
+            skip(buffer, 2);
+            skip(buffer, buffer.getInt());
+        }
+    }
+
+    private static void skipElementValuePairs(ByteBuffer buffer) {
+        int pairs = Short.toUnsignedInt(buffer.getShort());
+        for (int i = 0; i < pairs; i++) {
+            skip(buffer, 2);
+            skipElementValue(buffer);
+        }
+    }
+
+    private static void skipElementValue(ByteBuffer buffer) {
+        skipElementValue(buffer, (char) buffer.get());
+    }
+
+    private static void skipElementValue(ByteBuffer buffer, char tag) {
+        switch (tag) {
+            case 'e' -> skip(buffer, 4);
+            case '@' -> {
+                skip(buffer, 2);
+                skipElementValuePairs(buffer);
+            }
+            case '[' -> {
+                int values = Short.toUnsignedInt(buffer.getShort());
+                for (int i = 0; i < values; i++) {
+                    skipElementValue(buffer);
+                }
+            }
+            default -> skip(buffer, 2);
+        }
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Class file entries of a jar, listed from its central directory. The jar is neither mapped nor kept open: a scan
+     * opens it, reads the entries of the package at their offsets, inflating the compressed ones, and closes it, so
+     * nothing locks the file once the scan is done.
+     * <p>
+     * Zip64 jars, with more than 65535 entries or larger than 4 GB, are not listed; every scan enumerates them
+     * through {@link ZipFile} instead.
+     */
+    private static class JarListing {
+        private final long size;
+        private final FileTime modified;
+        /**
+         * {@code null} for a Zip64 jar.
+         */
+        private final Map<String, ClassEntry> classEntries;
+
+        private JarListing(long size, FileTime modified, Map<String, ClassEntry> classEntries) {
+            this.size = size;
+            this.modified = modified;
+            this.classEntries = classEntries;
+        }
+
+        /**
+         * The listing of the jar, read again only when the jar changed since it was listed.
+         */
+        private static JarListing of(Path path) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            SoftReference<JarListing> reference = LISTINGS.get(path);
+            JarListing listing = reference == null ? null : reference.get();
+            if (listing == null || listing.size != attributes.size() || !listing.modified.equals(attributes.lastModifiedTime())) {
+                Map<String, ClassEntry> classEntries;
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    classEntries = readCentralDirectory(channel, path);
+                } catch (Zip64Exception e) {
+                    classEntries = null;
+                }
+                listing = new JarListing(attributes.size(), attributes.lastModifiedTime(), classEntries);
+                LISTINGS.put(path, new SoftReference<>(listing));
+            }
+            return listing;
+        }
+
+        private static Map<String, ClassEntry> readCentralDirectory(FileChannel channel, Path path) throws IOException {
+            long fileSize = channel.size();
+            int tailLength = (int) Math.min(fileSize, 22 + 0xFFFF);
+            ByteBuffer tail = read(channel, fileSize - tailLength, tailLength);
+            int end = -1;
+            for (int position = tailLength - 22; position >= 0; position--) {
+                if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY) {
+                    end = position;
+                    break;
+                }
+            }
+            if (end < 0) throw new IOException("Not a zip file: " + path);
+            int entries = Short.toUnsignedInt(tail.getShort(end + 10));
+            long directorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+            long offset = Integer.toUnsignedLong(tail.getInt(end + 16));
+            if (entries == 0xFFFF || directorySize == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) throw new Zip64Exception();
+            if (offset + directorySize > fileSize) throw new IOException("Corrupted zip file: " + path);
+            ByteBuffer directory = read(channel, offset, (int) directorySize);
+            // in central directory order, like the ZipFile enumeration of Zip64 jars
+            Map<String, ClassEntry> classEntries = new LinkedHashMap<>();
+            try {
+                int position = 0;
+                for (int i = 0; i < entries; i++) {
+                    if (directory.getInt(position) != CENTRAL_DIRECTORY_HEADER) throw new IOException("Corrupted zip file: " + path);
+                    int nameLength = Short.toUnsignedInt(directory.getShort(position + 28));
+                    int extraLength = Short.toUnsignedInt(directory.getShort(position + 30));
+                    int commentLength = Short.toUnsignedInt(directory.getShort(position + 32));
+                    if (endsWithClassSuffix(directory, position + 46, nameLength)) {
+                        byte[] name = new byte[nameLength];
+                        directory.get(position + 46, name);
+                        ClassEntry entry = new ClassEntry(Short.toUnsignedInt(directory.getShort(position + 10)),
+                                directory.getInt(position + 20), directory.getInt(position + 24),
+                                Integer.toUnsignedLong(directory.getInt(position + 42)));
+                        if (entry.compressedSize() < 0 || entry.size() < 0 || entry.localHeader() == 0xFFFFFFFFL) {
+                            throw new Zip64Exception();
+                        }
+                        classEntries.put(new String(name, StandardCharsets.UTF_8), entry);
+                    }
+                    position += 46 + nameLength + extraLength + commentLength;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                throw new IOException("Corrupted zip file: " + path);
+            }
+            return classEntries;
+        }
+
+        private static boolean endsWithClassSuffix(ByteBuffer directory, int name, int nameLength) {
+            if (nameLength <= CLASS_SUFFIX.length()) return false;
+            for (int i = 0; i < CLASS_SUFFIX.length(); i++) {
+                if (directory.get(name + nameLength - CLASS_SUFFIX.length() + i) != CLASS_SUFFIX.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private Map<String, List<Condition>> scan(Path path, String packagePath, Predicate<String> filter,
+                                                  Set<String> descriptors) throws IOException {
+            if (classEntries == null) return scanZipFile(path, packagePath, filter, descriptors);
+            Map<String, List<Condition>> classes = new LinkedHashMap<>();
+            FileChannel channel = null;
+            try {
+                for (Map.Entry<String, ClassEntry> entry : classEntries.entrySet()) {
+                    String entryName = entry.getKey();
+                    if (!entryName.startsWith(packagePath)) continue;
+                    String className = toClassName(entryName);
+                    if (className == null || !filter.test(className)) continue;
+                    if (channel == null) channel = FileChannel.open(path, StandardOpenOption.READ);
+                    List<Condition> conditions = readConditions(read(channel, entry.getValue()), descriptors);
+                    if (conditions != null) classes.put(className, conditions);
+                }
+            } finally {
+                if (channel != null) channel.close();
+            }
+            return classes;
+        }
+
+        private static Map<String, List<Condition>> scanZipFile(Path path, String packagePath, Predicate<String> filter,
+                                                                Set<String> descriptors) throws IOException {
+            Map<String, List<Condition>> classes = new LinkedHashMap<>();
+            try (ZipFile zipFile = new ZipFile(path.toFile())) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String entryName = entry.getName();
+                    if (entry.isDirectory() || !entryName.startsWith(packagePath)) continue;
+                    String className = toClassName(entryName);
+                    if (className == null || !filter.test(className)) continue;
+                    try (InputStream input = zipFile.getInputStream(entry)) {
+                        List<Condition> conditions = readConditions(ByteBuffer.wrap(input.readAllBytes()), descriptors);
+                        if (conditions != null) classes.put(className, conditions);
+                    }
+                }
+            }
+            return classes;
+        }
+
+        private static ByteBuffer read(FileChannel channel, ClassEntry entry) throws IOException {
+            ByteBuffer local = read(channel, entry.localHeader(), 30);
+            if (local.getInt(0) != LOCAL_FILE_HEADER) throw new IOException("Corrupted zip entry");
+            long data = entry.localHeader() + 30 + Short.toUnsignedInt(local.getShort(26))
+                    + Short.toUnsignedInt(local.getShort(28));
+            ByteBuffer compressed = read(channel, data, entry.compressedSize());
+            if (entry.method() == 0) return compressed;
+            if (entry.method() != 8) throw new IOException("Unsupported compression method " + entry.method());
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressed);
+                byte[] bytes = new byte[entry.size()];
+                int inflated = 0;
+                while (inflated < bytes.length && !inflater.finished()) {
+                    int count = inflater.inflate(bytes, inflated, bytes.length - inflated);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                    inflated += count;
+                }
+                return ByteBuffer.wrap(bytes, 0, inflated);
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of zip file");
+            }
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * A jar whose central directory or entries need the Zip64 extension.
+     */
+    private static class Zip64Exception extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Compression method, sizes and local header offset of a class file entry.
+     */
+    private record ClassEntry(int method, int compressedSize, int size, long localHeader) {
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.commons.ioc.core;
+
+import lombok.Getter;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compile-time index of {@code @Component} and {@code @Configuration} classes written by
+ * {@code ru.ckateptb.commons.ioc.processor.ComponentIndexProcessor}, which ships in the {@code processor} classifier
+ * of the artifact and runs only where that jar is on the annotation processor path.
+ * <p>
+ * Every jar or output directory compiled with the processor contains a {@link #LOCATION} file, one tab separated
+ * record per line:
+ * <pre>
+ * component     &lt;class&gt;
+ * configuration &lt;class&gt;
+ * condition     &lt;class&gt; &lt;on_class|on_missing_bean|on_property&gt; &lt;value&gt;...
+ * </pre>
+ * Only what decides whether a class is loaded at all is recorded; interfaces, qualifiers, injection points and
+ * {@code @Bean} methods are read from the class once it is loaded.
+ */
+public class ComponentIndex {
+    public static final String LOCATION = "META-INF/ru.ckateptb.commons.ioc/components.index";
+    private final Set<String> roots = new HashSet<>();
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    public static ComponentIndex load(ClassLoader classLoader) throws IOException {
+        ComponentIndex index = new ComponentIndex();
+        Enumeration<URL> resources = classLoader.getResources(LOCATION);
+        while (resources.hasMoreElements()) {
+            URL url = resources.nextElement();
+            String external = url.toExternalForm();
+            index.roots.add(external.substring(0, external.length() - LOCATION.length()));
+            try (Reader reader = new InputStreamReader(url.openStream(), StandardCharsets.UTF_8)) {
+                index.read(reader);
+            }
+        }
+        return index;
+    }
+
+    public static void write(Collection<Entry> entries, Writer writer) throws IOException {
+        PrintWriter out = new PrintWriter(writer);
+        out.println("# ru.ckateptb.commons.ioc component index");
+        for (Entry entry : entries) {
+            String name = entry.getClassName();
+            if (entry.isComponent()) out.println(line("component", name));
+            if (entry.isConfiguration()) out.println(line("configuration", name));
+            for (Condition condition : entry.getConditions()) {
+                List<String> columns = new ArrayList<>(List.of("condition", name, condition.getKind().name().toLowerCase(Locale.ROOT)));
+                columns.addAll(condition.getValues());
+                out.println(line(columns.toArray(new String[0])));
+            }
+        }
+        out.flush();
+    }
+
+    private static String line(String... columns) {
+        return String.join("\t", columns);
+    }
+
+    /**
+     * The index can replace classpath scanning of a package only when every classpath root that contains the package
+     * was compiled with the processor, otherwise components of a non indexed root would be lost.
+     */
+    public boolean covers(ClassLoader classLoader, String packageName) throws IOException {
+        if (roots.isEmpty()) return false;
+        String packagePath = packageName.replace('.', '/');
+        Enumeration<URL> resources = classLoader.getResources(packagePath);
+        boolean found = false;
+        while (resources.hasMoreElements()) {
+            String external = resources.nextElement().toExternalForm();
+            if (external.endsWith("/")) external = external.substring(0, external.length() - 1);
+            if (!external.endsWith(packagePath)) return false;
+            if (!roots.contains(external.substring(0, external.length() - packagePath.length()))) return false;
+            found = true;
+        }
+        return found;
+    }
+
+    public List<Entry> getEntries(String packageName) {
+        String prefix = packageName.isEmpty() ? "" : packageName + ".";
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.getClassName().startsWith(prefix)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    public Entry getEntry(String className) {
+        return entries.get(className);
+    }
+
+    private void read(Reader reader) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] columns = line.split("\t", -1);
+            if (columns.length < 2) continue;
+            Entry entry = entries.computeIfAbsent(columns[1], Entry::new);
+            switch (columns[0]) {
+                case "component" -> entry.component = true;
+                case "configuration" -> entry.configuration = true;
+                case "condition" -> entry.conditions.add(new Condition(
+                        Condition.Kind.valueOf(columns[2].toUpperCase(Locale.ROOT)),
+                        List.of(Arrays.copyOfRange(columns, 3, columns.length))));
+                default -> {
+                    // records of another processor version, skip them
+                }
+            }
+        }
+    }
+
+    @Getter
+    public static class Entry {
+        private final String className;
+        private final List<Condition> conditions = new ArrayList<>();
+        private boolean component;
+        private boolean configuration;
+
+        public Entry(String className) {
+            this.className = className;
+        }
+
+        public Entry(String className, boolean component, boolean configuration) {
+            this.className = className;
+            this.component = component;
+            this.configuration = configuration;
+        }
+    }
+}
@@ -0,0 +1,476 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.commons.ioc.core;
+
+import lombok.Getter;
+import ru.ckateptb.commons.ioc.annotations.Lazy;
+import ru.ckateptb.commons.ioc.annotations.Qualifier;
+import ru.ckateptb.commons.ioc.exceptions.IoCException;
+import ru.ckateptb.commons.ioc.utils.ClassMetadata;
+import ru.ckateptb.commons.ioc.utils.FinderUtils;
+
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.*;
+
+/**
+ * Precompiled wiring of one component class. Constructor, {@code @Autowired} fields and setters,
+ * {@code @PostConstruct} and {@code @Bean} methods are resolved once and the qualifiers of every injection point are
+ * read once, so creating and wiring an instance does not go through core reflection.
+ * <p>
+ * Constructors with up to two parameters and methods with up to one parameter are bound with
+ * {@link LambdaMetafactory} into functional objects defined next to the component class, which the JIT compiles to
+ * a direct call. Wider signatures use a spread {@link MethodHandle}, fields use a setter handle.
+ */
+@Getter
+public class ComponentInjector {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Dependency[] NO_DEPENDENCIES = new Dependency[0];
+    private final Class<?> type;
+    private final Dependency[] constructorDependencies;
+    private final FieldInjector[] fields;
+    private final MethodInjector[] setters;
+    private final MethodInjector[] postConstructs;
+    private final MethodInjector[] beanMethods;
+    private final Invoker constructor;
+
+    private static final ClassValue<ComponentInjector> injectors = new ClassValue<>() {
+        @Override
+        protected ComponentInjector computeValue(Class<?> type) {
+            return new ComponentInjector(type);
+        }
+    };
+
+    private static final ClassValue<MethodInjector[]> scheduledMethods = new ClassValue<>() {
+        @Override
+        protected MethodInjector[] computeValue(Class<?> type) {
+            List<MethodInjector> injectors = new ArrayList<>();
+            for (Method method : FinderUtils.getMetadata(type).getScheduledMethods()) {
+                if (method.getParameterCount() > 0) {
+                    new IoCException("Method " + method + " must not take parameters").printStackTrace();
+                    continue;
+                }
+                injectors.add(new MethodInjector(method));
+            }
+            return injectors.toArray(new MethodInjector[0]);
+        }
+    };
+
+    private static final ClassValue<MethodInjector[]> preDestroyMethods = new ClassValue<>() {
+        @Override
+        protected MethodInjector[] computeValue(Class<?> type) {
+            List<MethodInjector> injectors = new ArrayList<>();
+            for (Method method : FinderUtils.getMetadata(type).getPreDestroyMethods()) {
+                if (method.getParameterCount() > 0) {
+                    new IoCException("Method " + method + " must not take parameters").printStackTrace();
+                    continue;
+                }
+                injectors.add(new MethodInjector(method));
+            }
+            return injectors.toArray(new MethodInjector[0]);
+        }
+    };
+
+    public ComponentInjector(Class<?> type) {
+        this.type = type;
+        ClassMetadata metadata = FinderUtils.getMetadata(type);
+        Constructor<?> defaultConstructor = metadata.getConstructor();
+        if (defaultConstructor == null) {
+            throw new IoCException("There is no default constructor in class " + type.getName());
+        }
+        this.constructor = invoker(defaultConstructor);
+        this.constructorDependencies = dependencies(defaultConstructor);
+
+        Field[] autowiredFields = metadata.getAutowiredFields();
+        this.fields = new FieldInjector[autowiredFields.length];
+        for (int i = 0; i < autowiredFields.length; i++) {
+            this.fields[i] = new FieldInjector(autowiredFields[i]);
+        }
+
+        Method[] autowiredMethods = metadata.getAutowiredMethods();
+        this.setters = new MethodInjector[autowiredMethods.length];
+        for (int i = 0; i < autowiredMethods.length; i++) {
+            this.setters[i] = new MethodInjector(autowiredMethods[i]);
+        }
+
+        List<MethodInjector> postConstructs = new ArrayList<>();
+        for (Method method : metadata.getPostConstructMethods()) {
+            if (method.getParameterCount() > 0) {
+                new IoCException("Method " + method + " must not take parameters").printStackTrace();
+                continue;
+            }
+            postConstructs.add(new MethodInjector(method));
+        }
+        this.postConstructs = postConstructs.toArray(new MethodInjector[0]);
+
+        Method[] beanMethods = metadata.getBeanMethods();
+        this.beanMethods = new MethodInjector[beanMethods.length];
+        for (int i = 0; i < beanMethods.length; i++) {
+            this.beanMethods[i] = new MethodInjector(beanMethods[i]);
+        }
+    }
+
+    /**
+     * The injector of the class, built on first use and cached alongside the class.
+     */
+    public static ComponentInjector of(Class<?> type) {
+        return injectors.get(type);
+    }
+
+    /**
+     * The {@code @Scheduled} methods of the class, cached like {@link #of(Class)}. Unlike the injector they are
+     * available for any bean class, including beans that are not created from their class.
+     */
+    public static MethodInjector[] scheduledMethods(Class<?> type) {
+        return scheduledMethods.get(type);
+    }
+
+    /**
+     * The {@code @PreDestroy} methods of the class, cached like {@link #scheduledMethods(Class)}.
+     */
+    public static MethodInjector[] preDestroyMethods(Class<?> type) {
+        return preDestroyMethods.get(type);
+    }
+
+    public Object newInstance(Object[] arguments) throws InvocationTargetException {
+        try {
+            return constructor.invoke(null, arguments);
+        } catch (Throwable throwable) {
+            throw new InvocationTargetException(throwable);
+        }
+    }
+
+    private static Dependency[] dependencies(Executable executable) {
+        if (executable.getParameterCount() == 0) return NO_DEPENDENCIES;
+        Parameter[] parameters = executable.getParameters();
+        Dependency[] dependencies = new Dependency[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            dependencies[i] = Dependency.of(parameters[i], parameters[i].getType(), parameters[i].getParameterizedType(), null);
+        }
+        return dependencies;
+    }
+
+    private static String qualifier(AnnotatedElement element) {
+        Qualifier qualifier = element.getAnnotation(Qualifier.class);
+        return qualifier == null ? null : qualifier.value();
+    }
+
+    private static Invoker invoker(Constructor<?> constructor) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(constructor.getDeclaringClass(), LOOKUP);
+            MethodHandle handle = lookup.unreflectConstructor(constructor);
+            switch (constructor.getParameterCount()) {
+                case 0 -> {
+                    Supplier<Object> supplier = lambda(lookup, Supplier.class, "get", MethodType.methodType(Object.class), handle);
+                    return (instance, arguments) -> supplier.get();
+                }
+                case 1 -> {
+                    Function<Object, Object> function = lambda(lookup, Function.class, "apply",
+                            MethodType.methodType(Object.class, Object.class), handle);
+                    return (instance, arguments) -> function.apply(arguments[0]);
+                }
+                case 2 -> {
+                    BiFunction<Object, Object, Object> function = lambda(lookup, BiFunction.class, "apply",
+                            MethodType.methodType(Object.class, Object.class, Object.class), handle);
+                    return (instance, arguments) -> function.apply(arguments[0], arguments[1]);
+                }
+            }
+        } catch (Throwable ignored) {
+            // not bindable to a functional object, fall back to the spread handle
+        }
+        MethodHandle spread;
+        try {
+            spread = LOOKUP.unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, constructor.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new IoCException(e);
+        }
+        return (instance, arguments) -> (Object) spread.invokeExact(arguments);
+    }
+
+    private static Invoker invoker(Method method) {
+        if (!Modifier.isStatic(method.getModifiers())) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), LOOKUP);
+                MethodHandle handle = lookup.unreflect(method);
+                boolean returnsVoid = method.getReturnType() == void.class;
+                switch (method.getParameterCount()) {
+                    case 0 -> {
+                        if (returnsVoid) {
+                            Consumer<Object> consumer = lambda(lookup, Consumer.class, "accept",
+                                    MethodType.methodType(void.class, Object.class), handle);
+                            return (instance, arguments) -> {
+                                consumer.accept(instance);
+                                return null;
+                            };
+                        }
+                        Function<Object, Object> function = lambda(lookup, Function.class, "apply",
+                                MethodType.methodType(Object.class, Object.class), handle);
+                        return (instance, arguments) -> function.apply(instance);
+                    }
+                    case 1 -> {
+                        if (returnsVoid) {
+                            BiConsumer<Object, Object> consumer = lambda(lookup, BiConsumer.class, "accept",
+                                    MethodType.methodType(void.class, Object.class, Object.class), handle);
+                            return (instance, arguments) -> {
+                                consumer.accept(instance, arguments[0]);
+                                return null;
+                            };
+                        }
+                        BiFunction<Object, Object, Object> function = lambda(lookup, BiFunction.class, "apply",
+                                MethodType.methodType(Object.class, Object.class, Object.class), handle);
+                        return (instance, arguments) -> function.apply(instance, arguments[0]);
+                    }
+                }
+            } catch (Throwable ignored) {
+                // not bindable to a functional object, fall back to the spread handle
+            }
+        }
+        MethodHandle spread;
+        try {
+            MethodHandle handle = LOOKUP.unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            spread = handle.asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new IoCException(e);
+        }
+        return (instance, arguments) -> (Object) spread.invokeExact(instance, arguments);
+    }
+
+    /**
+     * Binds an instance method with one parameter into a {@link BiConsumer} of the instance and the argument, the
+     * result of the method is dropped. Falls back to a method handle when the method cannot be bound directly.
+     */
+    public static BiConsumer<Object, Object> consumer(Method method) {
+        MethodHandle handle;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), LOOKUP);
+            handle = lookup.unreflect(method);
+            try {
+                return lambda(lookup, BiConsumer.class, "accept",
+                        MethodType.methodType(void.class, Object.class, Object.class), handle);
+            } catch (Throwable ignored) {
+                // not bindable to a functional object, fall back to the handle
+            }
+        } catch (IllegalAccessException e) {
+            throw new IoCException(e);
+        }
+        MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (instance, argument) -> {
+            try {
+                generic.invokeExact(instance, argument);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw new IoCException(throwable);
+            }
+        };
+    }
+
+    /**
+     * Spins a class implementing the functional interface that calls the member behind {@code handle} directly.
+     */
+    @SuppressWarnings("unchecked")
+    private static <F> F lambda(MethodHandles.Lookup lookup, Class<? super F> functionalInterface, String name,
+                                MethodType erasedType, MethodHandle handle) throws Throwable {
+        MethodType instantiatedType = handle.type().wrap();
+        if (erasedType.returnType() == void.class) {
+            instantiatedType = instantiatedType.changeReturnType(void.class);
+        }
+        CallSite site = LambdaMetafactory.metafactory(lookup, name, MethodType.methodType(functionalInterface),
+                erasedType, handle, instantiatedType);
+        return (F) site.getTarget().invoke();
+    }
+
+    /**
+     * Injection point: the type to resolve, the name used to pick one of several implementations, an optional
+     * {@link Qualifier} and how the bean is handed over.
+     */
+    @Getter
+    public static class Dependency {
+        private final Class<?> type;
+        private final String name;
+        private final String qualifier;
+        private final Kind kind;
+
+        public Dependency(Class<?> type, String name, String qualifier) {
+            this(type, name, qualifier, Kind.INSTANCE);
+        }
+
+        public Dependency(Class<?> type, String name, String qualifier, Kind kind) {
+            this.type = type;
+            this.name = name;
+            this.qualifier = qualifier;
+            this.kind = kind;
+        }
+
+        /**
+         * Whether the bean is resolved on first use rather than when the injection point is filled.
+         */
+        public boolean isLazy() {
+            return kind == Kind.PROXY || kind == Kind.SUPPLIER;
+        }
+
+        /**
+         * Whether the injection point takes any number of beans of the type, none included, rather than exactly one.
+         */
+        public boolean isAggregate() {
+            return kind == Kind.OPTIONAL || kind == Kind.LIST || kind == Kind.MAP;
+        }
+
+        /**
+         * Injection point of a field or a parameter, {@code name} is {@code null} for parameters, which are named
+         * after the type they resolve.
+         */
+        private static Dependency of(AnnotatedElement element, Class<?> type, Type genericType, String name) {
+            Kind kind = Kind.INSTANCE;
+            if (type == Provider.class) {
+                kind = Kind.SUPPLIER;
+                type = typeArgument(genericType, 0);
+            } else if (type == Optional.class) {
+                kind = Kind.OPTIONAL;
+                type = typeArgument(genericType, 0);
+            } else if (type == List.class) {
+                kind = Kind.LIST;
+                type = typeArgument(genericType, 0);
+            } else if (type == Map.class) {
+                if (typeArgument(genericType, 0) != String.class) {
+                    throw new IoCException("Map injection point " + element + " must be keyed by String");
+                }
+                kind = Kind.MAP;
+                type = typeArgument(genericType, 1);
+            } else if (element.isAnnotationPresent(Lazy.class)) {
+                if (type == Supplier.class) {
+                    kind = Kind.SUPPLIER;
+                    type = typeArgument(genericType, 0);
+                } else if (type.isInterface()) {
+                    kind = Kind.PROXY;
+                } else {
+                    throw new IoCException("Lazy injection point " + element + " must be an interface or a Supplier");
+                }
+            }
+            return new Dependency(type, name == null ? type.getName() : name, qualifier(element), kind);
+        }
+
+        private static Class<?> typeArgument(Type genericType, int index) {
+            if (genericType instanceof ParameterizedType parameterized) {
+                Type argument = parameterized.getActualTypeArguments()[index];
+                if (argument instanceof Class<?> clazz) return clazz;
+                if (argument instanceof ParameterizedType parameterizedArgument) {
+                    return (Class<?>) parameterizedArgument.getRawType();
+                }
+            }
+            throw new IoCException("Cannot resolve the bean type of " + genericType.getTypeName());
+        }
+
+        public enum Kind {
+            /**
+             * The bean itself.
+             */
+            INSTANCE,
+            /**
+             * A proxy of the interface that resolves the bean on its first call.
+             */
+            PROXY,
+            /**
+             * A {@link Supplier} or {@link Provider} that resolves the bean on its first call.
+             */
+            SUPPLIER,
+            /**
+             * An {@link Optional} of the bean, empty when there is none.
+             */
+            OPTIONAL,
+            /**
+             * An immutable {@link List} of the beans of every implementation of the type.
+             */
+            LIST,
+            /**
+             * An immutable {@link Map} of the beans of every implementation of the type by qualifier, or by class name
+             * for implementations without one.
+             */
+            MAP
+        }
+    }
+
+    @FunctionalInterface
+    private interface Invoker {
+        Object invoke(Object instance, Object[] arguments) throws Throwable;
+    }
+
+    @Getter
+    public static class FieldInjector {
+        private final Field field;
+        private final Dependency dependency;
+        private final MethodHandle setter;
+
+        private FieldInjector(Field field) {
+            this.field = field;
+            this.dependency = Dependency.of(field, field.getType(), field.getGenericType(), field.getName());
+            try {
+                this.setter = LOOKUP.unreflectSetter(field)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                throw new IoCException(e);
+            }
+        }
+
+        public void inject(Object instance, Object value) throws InvocationTargetException {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable throwable) {
+                throw new InvocationTargetException(throwable);
+            }
+        }
+    }
+
+    @Getter
+    public static class MethodInjector {
+        private final Method method;
+        private final Dependency[] dependencies;
+        private final Invoker invoker;
+
+        private MethodInjector(Method method) {
+            this.method = method;
+            this.dependencies = dependencies(method);
+            this.invoker = invoker(method);
+        }
+
+        /**
+         * Injector of a single method, for beans that are not created from their class.
+         */
+        public static MethodInjector of(Method method) {
+            return new MethodInjector(method);
+        }
+
+        public Object invoke(Object instance, Object[] arguments) throws InvocationTargetException {
+            try {
+                return invoker.invoke(instance, arguments);
+            } catch (Throwable throwable) {
+                throw new InvocationTargetException(throwable);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.commons.ioc.core;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.ckateptb.commons.ioc.annotations.ConditionalOnClass;
+import ru.ckateptb.commons.ioc.annotations.ConditionalOnMissingBean;
+import ru.ckateptb.commons.ioc.annotations.ConditionalOnProperty;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Condition of a component or configuration class, read from its class file by {@link ClassPathScanner} or from the
+ * {@link ComponentIndex}, so it is evaluated before the class is loaded. Values are strings:
+ * <ul>
+ *     <li>{@link Kind#ON_CLASS} - binary names of the classes that have to be present</li>
+ *     <li>{@link Kind#ON_MISSING_BEAN} - binary names of the types that must not have a bean, the class itself when
+ *     empty</li>
+ *     <li>{@link Kind#ON_PROPERTY} - property name, expected value or {@code ""}, {@code true} or {@code false} to
+ *     match when the property is missing</li>
+ * </ul>
+ */
+@Getter
+@RequiredArgsConstructor
+public class Condition {
+    private final Kind kind;
+    private final List<String> values;
+
+    /**
+     * Whether every condition of the class holds.
+     */
+    public static boolean matches(String className, List<Condition> conditions, Environment environment) {
+        for (Condition condition : conditions) {
+            if (!condition.matches(className, environment)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether one of the conditions is {@link Kind#ON_MISSING_BEAN}, which is only decided once the classes of the
+     * package without such a condition are known.
+     */
+    public static boolean dependsOnBeans(List<Condition> conditions) {
+        for (Condition condition : conditions) {
+            if (condition.kind == Kind.ON_MISSING_BEAN) return true;
+        }
+        return false;
+    }
+
+    public boolean matches(String className, Environment environment) {
+        return switch (kind) {
+            case ON_CLASS -> values.stream().allMatch(environment::isPresent);
+            case ON_MISSING_BEAN -> values.isEmpty() ?
+                    !environment.hasBean(className) : values.stream().noneMatch(environment::hasBean);
+            case ON_PROPERTY -> {
+                String value = environment.getProperty(values.get(0));
+                if (value == null) yield Boolean.parseBoolean(values.get(2));
+                String expected = values.get(1);
+                yield expected.isEmpty() ? !value.equalsIgnoreCase("false") : value.equalsIgnoreCase(expected);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return kind.name().toLowerCase(Locale.ROOT) + values;
+    }
+
+    /**
+     * What the conditions are checked against.
+     */
+    public interface Environment {
+        /**
+         * Whether the class can be loaded, answered without loading it.
+         */
+        boolean isPresent(String className);
+
+        boolean hasBean(String typeName);
+
+        String getProperty(String name);
+    }
+
+    public enum Kind {
+        ON_CLASS(ConditionalOnClass.class),
+        ON_MISSING_BEAN(ConditionalOnMissingBean.class),
+        ON_PROPERTY(ConditionalOnProperty.class);
+
+        @Getter
+        private final Class<? extends Annotation> annotation;
+
+        Kind(Class<? extends Annotation> annotation) {
+            this.annotation = annotation;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Wiring of the packages of an {@link IoCHolder}, generated ahead of time by
+ * {@code ru.ckateptb.commons.ioc.processor.ContextWiringProcessor} as {@code <holder>_IoCWiring}. It registers the
+ * implementations of the components and creates the components, configurations and {@code @Bean} beans in steps of
+ * plain constructor, field, setter and method calls, so the context neither looks up members reflectively nor
+ * resolves injection points at runtime. Steps are run in dependency order, independent steps concurrently like the
+ * components of a scan.
+ * <p>
+ * Beans the generated code cannot create directly, such as components with private injection points, {@code @Lazy}
+ * or aggregate injection points or on a dependency cycle, are handed over to the {@link Context} in their step and
+ * created like scanned ones.
+ */
+public interface ContextWiring {
+    String SUFFIX = "_IoCWiring";
+
+    /**
+     * Packages the wiring was generated for, as the holder declares them to be scanned.
+     */
+    String[] getPackages();
+
+    /**
+     * Every component and configuration class of the packages, {@code IoC} scans the packages instead when its
+     * component index lists other classes.
+     */
+    String[] getClassNames();
+
+    /**
+     * Registers the implementations and the {@code @Lazy} components, before any step runs.
+     */
+    void prepare(Context context);
+
+    /**
+     * Class of the bean each step creates: the component or configuration class, or the type a {@code @Bean} method
+     * returns.
+     */
+    Class<?>[] getTypes();
+
+    /**
+     * Indices of the steps each step depends on.
+     */
+    int[][] getDependencies();
+
+    /**
+     * Whether the step has to run on the calling thread, its class or configuration being {@code @SingleThreaded}.
+     */
+    boolean isSingleThreaded(int step);
+
+    /**
+     * Runs the step once all of its dependencies have run, storing the bean it creates at its index.
+     */
+    void run(int step, Object[] beans, Context context) throws Exception;
+
+    /**
+     * The context being initialized, as seen by the generated code.
+     */
+    interface Context {
+        /**
+         * Registers the implementation of the interface, {@code qualifier} is the qualifier of the implementation
+         * class, {@code ""} for none.
+         */
+        void implementation(Class<?> implementationClass, Class<?> interfaceClass, String qualifier);
+
+        /**
+         * Defers the {@code @Lazy} component until it is first requested.
+         */
+        void lazy(Class<?> type);
+
+        /**
+         * A bean the wiring does not create, such as a predefined bean or a bean of a parent context, resolved like
+         * an injection point of a scanned component.
+         */
+        <T> T resolve(Class<T> type, String name, String qualifier) throws Exception;
+
+        /**
+         * Creates and registers the component like a scanned one.
+         */
+        <T> T create(Class<T> type) throws Exception;
+
+        /**
+         * Creates the configuration like a scanned one, its {@code @Bean} methods are left to their own steps.
+         */
+        <T> T configuration(Class<T> type) throws Exception;
+
+        /**
+         * Publishes a created bean. {@code callbacks} is {@code false} when its class declares no
+         * {@code @Scheduled}, {@code @EventListener} or {@code @PreDestroy} methods, {@code dependencies} are the
+         * beans injected into it.
+         */
+        void register(Class<?> type, String name, Object bean, Class<?> origin, boolean callbacks, Object... dependencies);
+
+        /**
+         * Tracks the result of a {@code @PostConstruct} method until the context is ready.
+         */
+        void track(CompletionStage<?> stage, String method);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.commons.ioc.core;
+
+import lombok.Getter;
+import ru.ckateptb.commons.ioc.exceptions.IoCCircularDepException;
+import ru.ckateptb.commons.ioc.exceptions.IoCException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * In-flight bean creations, one per bean class. The first thread that asks for a missing bean owns its creation,
+ * every other thread waits for that single creation instead of a global lock, so unrelated beans are created
+ * concurrently.
+ * <p>
+ * Threads waiting for each other form a wait-for graph; a wait that would close a loop in it fails immediately with
+ * the chain of creations and the threads owning them.
+ * <p>
+ * A bean is handed to other threads only once it is completely wired. Its owner may {@linkplain Creation#expose(Object)
+ * expose} the instance earlier, to itself only, so that a cycle of injected fields on the owning thread can be closed.
+ */
+public class CreationRegistry {
+    private final Map<Class<?>, Creation> creations = new ConcurrentHashMap<>();
+    private final Map<Thread, Creation> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the in-flight creation of the class, registering a new one owned by the current thread when there is
+     * none. The owner must finish it with {@link #complete(Creation, Object)} or {@link #fail(Creation, Throwable)},
+     * any other thread has to {@link #await(Creation)} it.
+     */
+    public Creation begin(Class<?> clazz) throws IoCCircularDepException {
+        Creation creation = new Creation(clazz, Thread.currentThread());
+        Creation existing = creations.putIfAbsent(clazz, creation);
+        if (existing == null) return creation;
+        if (existing.isOwnedByCurrentThread()) {
+            throw new IoCCircularDepException("Circular dependency detected when creating class " + clazz.getName());
+        }
+        return existing;
+    }
+
+    /**
+     * The instance exposed by the creation of the class when the current thread owns it, otherwise {@code null}.
+     */
+    public Object getEarlyReference(Class<?> clazz) {
+        Creation creation = creations.get(clazz);
+        return creation != null && creation.isOwnedByCurrentThread() ? creation.earlyReference : null;
+    }
+
+    /**
+     * Whether a creation of the class is in flight on any thread.
+     */
+    public boolean isCreating(Class<?> clazz) {
+        return creations.containsKey(clazz);
+    }
+
+    public void complete(Creation creation, Object instance) {
+        creations.remove(creation.type, creation);
+        creation.future.complete(instance);
+    }
+
+    public void fail(Creation creation, Throwable throwable) {
+        creations.remove(creation.type, creation);
+        creation.future.completeExceptionally(throwable);
+    }
+
+    /**
+     * Blocks until a creation owned by another thread completes.
+     */
+    public Object await(Creation creation) throws IoCCircularDepException {
+        Thread current = Thread.currentThread();
+        waiting.put(current, creation);
+        try {
+            String lockPath = findDeadlock(current, creation);
+            if (lockPath != null) {
+                throw new IoCCircularDepException("Deadlock detected when creating class " + creation.type.getName() + ": " + lockPath);
+            }
+            return creation.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IoCException(e);
+        } catch (ExecutionException e) {
+            throw new IoCException(e.getCause());
+        } finally {
+            waiting.remove(current);
+        }
+    }
+
+    private String findDeadlock(Thread current, Creation creation) {
+        StringBuilder path = new StringBuilder(describe(creation));
+        Creation next = creation;
+        // the wait-for graph has at most one outgoing edge per thread, so the walk is bounded by the thread count
+        for (int i = 0; i <= waiting.size(); i++) {
+            Creation awaited = waiting.get(next.owner);
+            if (awaited == null) return null;
+            path.append(" -> ").append(describe(awaited));
+            if (awaited.owner == current) return path.toString();
+            next = awaited;
+        }
+        return null;
+    }
+
+    private String describe(Creation creation) {
+        return creation.type.getName() + " [" + creation.owner.getName() + "]";
+    }
+
+    @Getter
+    public static class Creation {
+        private final Class<?> type;
+        private final Thread owner;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        /**
+         * Read and written by the owner only.
+         */
+        private Object earlyReference;
+
+        private Creation(Class<?> type, Thread owner) {
+            this.type = type;
+            this.owner = owner;
+        }
+
+        public boolean isOwnedByCurrentThread() {
+            return owner == Thread.currentThread();
+        }
+
+        /**
+         * Makes the constructed, not yet wired instance visible to the owning thread through
+         * {@link CreationRegistry#getEarlyReference(Class)}.
+         */
+        public void expose(Object instance) {
+            earlyReference = instance;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.commons.ioc.core;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Directed graph of nodes and the nodes they depend on.
+ */
+public class DependencyGraph<K> {
+    private final Map<K, Set<K>> dependencies = new LinkedHashMap<>();
+
+    public void addNode(K node) {
+        dependencies.computeIfAbsent(node, key -> new LinkedHashSet<>());
+    }
+
+    public boolean containsNode(K node) {
+        return dependencies.containsKey(node);
+    }
+
+    /**
+     * Records that {@code node} depends on {@code dependency}, both are added as nodes when missing.
+     */
+    public void addDependency(K node, K dependency) {
+        addNode(dependency);
+        dependencies.computeIfAbsent(node, key -> new LinkedHashSet<>()).add(dependency);
+    }
+
+    public Set<K> getNodes() {
+        return Collections.unmodifiableSet(dependencies.keySet());
+    }
+
+    public Set<K> getDependencies(K node) {
+        Set<K> set = dependencies.get(node);
+        return set == null ? Collections.emptySet() : Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * Nodes ordered so that every node follows all of its dependencies. Nodes that are part of a cycle, or depend on
+     * one, are left out.
+     */
+    public List<K> topologicalOrder() {
+        Map<K, Integer> remaining = new HashMap<>(dependencies.size());
+        Map<K, List<K>> dependents = new HashMap<>(dependencies.size());
+        Deque<K> ready = new ArrayDeque<>();
+        dependencies.forEach((node, nodeDependencies) -> {
+            remaining.put(node, nodeDependencies.size());
+            if (nodeDependencies.isEmpty()) ready.add(node);
+            for (K dependency : nodeDependencies) {
+                dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(node);
+            }
+        });
+        List<K> order = new ArrayList<>(dependencies.size());
+        while (!ready.isEmpty()) {
+            K node = ready.removeFirst();
+            order.add(node);
+            for (K dependent : dependents.getOrDefault(node, Collections.emptyList())) {
+                if (remaining.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Nodes of one dependency cycle, the first node repeated at the end, or an empty list when the graph is acyclic.
+     */
+    public List<K> findCycle() {
+        Map<K, Boolean> visiting = new HashMap<>(dependencies.size());
+        Deque<K> path = new ArrayDeque<>();
+        for (K node : dependencies.keySet()) {
+            List<K> cycle = findCycle(node, visiting, path);
+            if (cycle != null) return cycle;
+        }
+        return Collections.emptyList();
+    }
+
+    private List<K> findCycle(K node, Map<K, Boolean> visiting, Deque<K> path) {
+        Boolean state = visiting.get(node);
+        if (state == Boolean.FALSE) return null;
+        path.addLast(node);
+        if (state == Boolean.TRUE) {
+            List<K> cycle = new ArrayList<>();
+            boolean inCycle = false;
+            for (K element : path) {
+                if (element.equals(node)) inCycle = true;
+                if (inCycle) cycle.add(element);
+            }
+            return cycle;
+        }
+        visiting.put(node, Boolean.TRUE);
+        for (K dependency : dependencies.getOrDefault(node, Collections.emptySet())) {
+            List<K> cycle = findCycle(dependency, visiting, path);
+            if (cycle != null) return cycle;
+        }
+        visiting.put(node, Boolean.FALSE);
+        path.removeLast();
+        return null;
+    }
+
+    /**
+     * Runs the action for every node once all of its dependencies are done, on the executor chosen for the node, so
+     * independent branches run concurrently. Nodes left out of {@link #topologicalOrder()} are not run, neither are
+     * nodes depending on a failed one. The returned future completes when every node is done and fails if any of
+     * them failed.
+     */
+    public CompletableFuture<Void> execute(Function<K, Executor> executors, Action<K> action) {
+        List<K> order = topologicalOrder();
+        Map<K, CompletableFuture<Void>> futures = new HashMap<>(order.size());
+        for (K node : order) {
+            Set<K> nodeDependencies = dependencies.get(node);
+            CompletableFuture<?>[] awaited = new CompletableFuture<?>[nodeDependencies.size()];
+            int i = 0;
+            for (K dependency : nodeDependencies) {
+                awaited[i++] = futures.get(dependency);
+            }
+            CompletableFuture<Void> ready = awaited.length == 0 ?
+                    CompletableFuture.completedFuture(null) : CompletableFuture.allOf(awaited);
+            futures.put(node, ready.thenRunAsync(() -> {
+                try {
+                    action.run(node);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executors.apply(node)));
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]));
+    }
+
+    @FunctionalInterface
+    public interface Action<K> {
+        void run(K node) throws Exception;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import ru.ckateptb.commons.ioc.annotations.EventListener;
+import ru.ckateptb.commons.ioc.exceptions.IoCException;
+import ru.ckateptb.commons.ioc.utils.FinderUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Events of one context, delivered to the {@link EventListener} methods of its beans.
+ * <p>
+ * Listeners are collected when a bean is registered and bound into direct calls once. The listeners of an event class
+ * - those of the class itself and of its supertypes - are looked up on the first event of the class and kept in a
+ * dispatch table, so {@link #publish(Object)} is a map read and a loop over an array. Registering a listener
+ * publishes a new table through copy-on-write.
+ * <p>
+ * {@link #publishAsync(Object)} hands the event to a bounded ring buffer drained in batches by a single dispatcher
+ * thread, so listeners see asynchronous events in publication order. A publisher blocks while the buffer is full.
+ */
+public class EventBus implements BeanRegisterHandler {
+    private static final Listener[] NO_LISTENERS = new Listener[0];
+    private static final Object STOP = new Object();
+    private final int capacity;
+    private final int batchSize;
+    private volatile Table table = new Table(NO_LISTENERS);
+    private volatile ArrayBlockingQueue<Object> buffer;
+    private volatile boolean shutdown;
+    private Thread dispatcher;
+
+    public EventBus() {
+        this(1024, 64);
+    }
+
+    /**
+     * @param capacity  events the asynchronous buffer holds before publishers block
+     * @param batchSize events the dispatcher takes from the buffer at once
+     */
+    public EventBus(int capacity, int batchSize) {
+        if (capacity <= 0 || batchSize <= 0) throw new IllegalArgumentException("capacity and batchSize must be positive");
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Subscribes the {@link EventListener} methods of the bean.
+     */
+    @Override
+    public void on(Object bean) {
+        Class<?> clazz = bean.getClass();
+        ClassLoader loader = clazz.getClassLoader();
+        // JDK classes carry no @EventListener methods and may not be opened for reflection
+        if (loader == null || loader == ClassLoader.getPlatformClassLoader()) return;
+        Method[] methods = FinderUtils.getMetadata(clazz).getEventListenerMethods();
+        if (methods.length == 0) return;
+        List<Listener> listeners = new ArrayList<>(methods.length);
+        for (Method method : methods) {
+            if (method.getParameterCount() != 1 || method.getParameterTypes()[0].isPrimitive()
+                    || Modifier.isStatic(method.getModifiers())) {
+                new IoCException("Method " + method + " must be an instance method taking the event").printStackTrace();
+                continue;
+            }
+            listeners.add(new Listener(bean, method.getParameterTypes()[0], ComponentInjector.consumer(method), method));
+        }
+        synchronized (this) {
+            Listener[] current = table.listeners;
+            Listener[] updated = Arrays.copyOf(current, current.length + listeners.size());
+            for (int i = 0; i < listeners.size(); i++) {
+                updated[current.length + i] = listeners.get(i);
+            }
+            table = new Table(updated);
+        }
+    }
+
+    /**
+     * Unsubscribes every listener method of the bean.
+     */
+    public synchronized void unregister(Object bean) {
+        Listener[] updated = Arrays.stream(table.listeners).filter(listener -> listener.bean != bean).toArray(Listener[]::new);
+        if (updated.length != table.listeners.length) table = new Table(updated);
+    }
+
+    /**
+     * Delivers the event to its listeners on the calling thread, in the order they were registered. A listener that
+     * throws is reported and does not stop the others.
+     */
+    public void publish(Object event) {
+        for (Listener listener : table.get(event.getClass())) {
+            listener.invoke(event);
+        }
+    }
+
+    /**
+     * Queues the event for the dispatcher thread, blocking while the buffer is full. Called from a listener running
+     * on the dispatcher, the event is delivered right away since the buffer would never drain otherwise.
+     *
+     * @throws IoCException when the bus is shut down, also when it is shut down while the event waits for room, so an
+     *                      event is never queued behind the dispatcher's stop and silently dropped
+     */
+    public void publishAsync(Object event) {
+        Objects.requireNonNull(event, "event");
+        if (shutdown) throw new IoCException("Event bus is shut down");
+        ArrayBlockingQueue<Object> buffer = this.buffer;
+        if (buffer == null) buffer = start();
+        if (Thread.currentThread() == dispatcher) {
+            publish(event);
+            return;
+        }
+        try {
+            while (!buffer.offer(event, 10, TimeUnit.MILLISECONDS)) {
+                if (shutdown) throw new IoCException("Event bus is shut down");
+            }
+            // shut down between the check and the offer: the dispatcher may stop before reaching the event
+            if (shutdown && buffer.remove(event)) throw new IoCException("Event bus is shut down");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IoCException(e);
+        }
+    }
+
+    private synchronized ArrayBlockingQueue<Object> start() {
+        if (shutdown) throw new IoCException("Event bus is shut down");
+        if (buffer == null) {
+            ArrayBlockingQueue<Object> created = new ArrayBlockingQueue<>(capacity);
+            dispatcher = new Thread(() -> drain(created), "IoC-events");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+            buffer = created;
+        }
+        return buffer;
+    }
+
+    private void drain(ArrayBlockingQueue<Object> buffer) {
+        List<Object> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            buffer.drainTo(batch, batchSize - 1);
+            for (Object event : batch) {
+                if (event == STOP) return;
+                publish(event);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Delivers the events already queued, stops the dispatcher thread and unsubscribes every listener.
+     */
+    public void shutdown() {
+        Thread dispatcher;
+        ArrayBlockingQueue<Object> buffer;
+        synchronized (this) {
+            if (shutdown) return;
+            shutdown = true;
+            dispatcher = this.dispatcher;
+            buffer = this.buffer;
+        }
+        if (buffer != null && dispatcher != Thread.currentThread()) {
+            try {
+                buffer.put(STOP);
+                dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            table = new Table(NO_LISTENERS);
+        }
+    }
+
+    /**
+     * Listeners with the dispatch table computed from them so far.
+     */
+    private static class Table {
+        private final Listener[] listeners;
+        private final Map<Class<?>, Listener[]> dispatch = new ConcurrentHashMap<>();
+
+        private Table(Listener[] listeners) {
+            this.listeners = listeners;
+        }
+
+        private Listener[] get(Class<?> eventClass) {
+            Listener[] matching = dispatch.get(eventClass);
+            if (matching == null) {
+                matching = Arrays.stream(listeners).filter(listener -> listener.eventType.isAssignableFrom(eventClass))
+                        .toArray(Listener[]::new);
+                if (matching.length == 0) matching = NO_LISTENERS;
+                dispatch.put(eventClass, matching);
+            }
+            return matching;
+        }
+    }
+
+    private static class Listener {
+        private final Object bean;
+        private final Class<?> eventType;
+        private final BiConsumer<Object, Object> invoker;
+        private final Method method;
+
+        private Listener(Object bean, Class<?> eventType, BiConsumer<Object, Object> invoker, Method method) {
+            this.bean = bean;
+            this.eventType = eventType;
+            this.invoker = invoker;
+            this.method = method;
+        }
+
+        private void invoke(Object event) {
+            try {
+                invoker.accept(bean, event);
+            } catch (Throwable throwable) {
+                new IoCException("Listener " + method + " failed on " + event, throwable).printStackTrace();
+            }
+        }
+    }
+}
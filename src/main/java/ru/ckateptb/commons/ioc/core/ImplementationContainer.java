@@ -18,47 +18,256 @@
 package ru.ckateptb.commons.ioc.core;
 
 
+import ru.ckateptb.commons.ioc.annotations.Qualifier;
 import ru.ckateptb.commons.ioc.exceptions.IoCException;
+import ru.ckateptb.commons.ioc.utils.FinderUtils;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
+/**
+ * Implementations by interface. Follows the same life cycle as {@link BeanContainer}: while the context is being
+ * initialized the implementations of each interface are collected by a mutable builder, read through an immutable
+ * snapshot taken on the first lookup after a change. {@link #freeze()} keeps only the snapshots, so lookups never
+ * lock; a later registration replaces the snapshot of its own interface with a modified copy.
+ */
 public class ImplementationContainer {
-    private final Map<Class<?>, Class<?>> implementationsMap = new HashMap<>(10);
+    private final Map<Class<?>, Implementations> implementationsMap = new ConcurrentHashMap<>(10);
+    /**
+     * Implementations registered before {@link #freeze()}, changed only while holding the container.
+     */
+    private final Map<Class<?>, Builder> builders = new ConcurrentHashMap<>();
+    private volatile boolean frozen;
 
     public void putImplementationClass(Class<?> implementationClass, Class<?> interfaceClass) {
-        implementationsMap.put(implementationClass, interfaceClass);
+        putImplementationClass(implementationClass, interfaceClass, null);
+    }
+
+    /**
+     * Registers the implementation with the {@link Qualifier} of its class already known, {@code ""} when it has
+     * none, so the class does not have to be inspected; {@code null} looks it up when it is needed.
+     */
+    public synchronized void putImplementationClass(Class<?> implementationClass, Class<?> interfaceClass, String qualifier) {
+        if (!frozen) {
+            builders.computeIfAbsent(interfaceClass, key -> new Builder()).add(implementationClass, qualifier);
+            return;
+        }
+        implementationsMap.compute(interfaceClass, (k, implementations) -> implementations == null ?
+                new Builder().add(implementationClass, qualifier).snapshot() : implementations.with(implementationClass, qualifier));
+    }
+
+    /**
+     * Marks the end of the initialization, replacing the builders with their snapshots.
+     */
+    public synchronized void freeze() {
+        if (frozen) return;
+        builders.forEach((interfaceClass, builder) -> implementationsMap.put(interfaceClass, builder.snapshot()));
+        frozen = true;
+        builders.clear();
+    }
+
+    /**
+     * Drops the matching implementation classes from every interface they implement.
+     */
+    public synchronized void removeImplementationClasses(Predicate<Class<?>> filter) {
+        builders.replaceAll((interfaceClass, builder) -> builder.without(filter));
+        builders.values().removeIf(Builder::isEmpty);
+        for (Class<?> interfaceClass : implementationsMap.keySet()) {
+            implementationsMap.computeIfPresent(interfaceClass, (k, implementations) ->
+                    implementations.classes.stream().noneMatch(filter) ? implementations : implementations.without(filter));
+        }
+    }
+
+    /**
+     * Drops every implementation, the container stays usable.
+     */
+    public synchronized void clear() {
+        builders.clear();
+        implementationsMap.clear();
+    }
+
+    public boolean isFrozen() {
+        return frozen;
     }
 
     public Class<?> getImplementationClass(Class<?> interfaceClass, final String fieldName, final String qualifier) {
-        Set<Map.Entry<Class<?>, Class<?>>> implementationClasses =
-                implementationsMap.entrySet().stream().filter(entry ->
-                        entry.getValue() == interfaceClass).collect(Collectors.toSet());
-        String errorMessage;
-        if (implementationClasses.isEmpty()) {
-            errorMessage = "No implementation found for interface " + interfaceClass.getName();
-        } else if (implementationClasses.size() == 1) {
-            Optional<Map.Entry<Class<?>, Class<?>>> optional = implementationClasses.stream().findFirst();
-            return optional.get().getKey();
-        } else {
-            final String findBy = (qualifier == null || qualifier.trim().length() == 0) ? fieldName : qualifier;
-            Optional<Map.Entry<Class<?>, Class<?>>> optional =
-                    implementationClasses.stream()
-                            .filter(entry ->
-                                    entry.getKey().getSimpleName()
-                                            .equalsIgnoreCase(findBy)).findAny();
-            if (optional.isPresent()) {
-                return optional.get().getKey();
-            } else {
-                errorMessage = "There are " + implementationClasses.size()
-                        + " of interface " + interfaceClass.getName()
-                        + " Expected single implementation or make use of"
-                        + " @Qualifier to resolve conflict";
+        Implementations implementations = implementations(interfaceClass);
+        if (implementations == null) {
+            throw new IoCException("No implementation found for interface " + interfaceClass.getName());
+        }
+        if (implementations.single != null) {
+            return implementations.single;
+        }
+        final String findBy = (qualifier == null || qualifier.trim().length() == 0) ? fieldName : qualifier;
+        Class<?> implementationClass = implementations.find(findBy);
+        if (implementationClass == null) {
+            throw new IoCException("There are " + implementations.classes.size()
+                    + " of interface " + interfaceClass.getName()
+                    + " Expected single implementation or make use of"
+                    + " @Qualifier to resolve conflict");
+        }
+        return implementationClass;
+    }
+
+    /**
+     * Whether the class is registered as an interface or as an implementation, compared by name.
+     */
+    public boolean contains(String className) {
+        if (!frozen) {
+            synchronized (this) {
+                for (Map.Entry<Class<?>, Builder> entry : builders.entrySet()) {
+                    if (entry.getKey().getName().equals(className) || entry.getValue().contains(className)) return true;
+                }
+            }
+        }
+        for (Map.Entry<Class<?>, Implementations> entry : implementationsMap.entrySet()) {
+            if (entry.getKey().getName().equals(className)) return true;
+            for (Class<?> implementationClass : entry.getValue().classes) {
+                if (implementationClass.getName().equals(className)) return true;
+            }
+        }
+        return false;
+    }
+
+    public Set<Class<?>> getImplementationClasses(Class<?> interfaceClass) {
+        Implementations implementations = implementations(interfaceClass);
+        return implementations == null ? Collections.emptySet() : implementations.classes;
+    }
+
+    private Implementations implementations(Class<?> interfaceClass) {
+        Builder builder = frozen ? null : builders.get(interfaceClass);
+        if (builder == null) return implementationsMap.get(interfaceClass);
+        Implementations snapshot = builder.snapshot;
+        if (snapshot != null) return snapshot;
+        synchronized (this) {
+            return builder.snapshot();
+        }
+    }
+
+    /**
+     * Immutable implementations of one interface with the lookup table used to resolve a conflict: the
+     * case-insensitive simple name of each implementation and the value of a {@link Qualifier} placed on the
+     * implementation class.
+     */
+    private static class Implementations {
+        private final Set<Class<?>> classes;
+        /**
+         * Qualifiers known up front, {@code ""} for none.
+         */
+        private final Map<Class<?>, String> qualifiers;
+        private final Map<String, Class<?>> byName;
+        private final Class<?> single;
+
+        private Implementations(Set<Class<?>> classes, Map<Class<?>, String> qualifiers, Map<String, Class<?>> byName) {
+            this.classes = classes;
+            this.qualifiers = qualifiers;
+            this.byName = byName;
+            this.single = classes.size() == 1 ? classes.iterator().next() : null;
+        }
+
+        /**
+         * The implementations that do not match the filter, {@code null} when none is left.
+         */
+        private Implementations without(Predicate<Class<?>> filter) {
+            Builder remaining = new Builder(this).without(filter);
+            return remaining.isEmpty() ? null : remaining.snapshot();
+        }
+
+        private Implementations with(Class<?> implementationClass, String qualifier) {
+            if (classes.contains(implementationClass)) return this;
+            return new Builder(this).add(implementationClass, qualifier).snapshot();
+        }
+
+        private Class<?> find(String name) {
+            if (name == null) return null;
+            Class<?> implementationClass = byName.get(name);
+            return implementationClass != null ? implementationClass : byName.get(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Mutable implementations of one interface, extending the lookup table with every added class instead of
+     * rebuilding it. Simple names go to the first class that has them and qualifiers override simple names, the
+     * later class winning a shared qualifier. The qualifiers of the classes are looked up once there is a conflict to
+     * resolve.
+     */
+    private static class Builder {
+        private final Set<Class<?>> classes;
+        private final Map<Class<?>, String> qualifiers;
+        private final Map<String, Class<?>> byName;
+        /**
+         * Read without the lock of the container, {@code null} after a change.
+         */
+        private volatile Implementations snapshot;
+
+        private Builder() {
+            this.classes = new LinkedHashSet<>();
+            this.qualifiers = new HashMap<>();
+            this.byName = new HashMap<>();
+        }
+
+        private Builder(Implementations implementations) {
+            this.classes = new LinkedHashSet<>(implementations.classes);
+            this.qualifiers = new HashMap<>(implementations.qualifiers);
+            this.byName = new HashMap<>(implementations.byName);
+        }
+
+        private Builder add(Class<?> implementationClass, String qualifier) {
+            if (!classes.add(implementationClass)) return this;
+            snapshot = null;
+            if (qualifier != null) qualifiers.put(implementationClass, qualifier);
+            if (classes.size() == 2) {
+                // the lookup table is only needed from the second class on
+                index(classes.iterator().next());
+            }
+            if (classes.size() >= 2) index(implementationClass);
+            return this;
+        }
+
+        private void index(Class<?> clazz) {
+            String simpleName = clazz.getSimpleName();
+            byName.putIfAbsent(simpleName, clazz);
+            byName.putIfAbsent(simpleName.toLowerCase(Locale.ROOT), clazz);
+            String classQualifier = qualifiers.computeIfAbsent(clazz, type -> {
+                String found = FinderUtils.getMetadata(type).getQualifier();
+                return found == null ? "" : found;
+            });
+            if (!classQualifier.isEmpty()) {
+                byName.put(classQualifier, clazz);
+                byName.put(classQualifier.toLowerCase(Locale.ROOT), clazz);
+            }
+        }
+
+        /**
+         * A builder of the implementations that do not match the filter, this one when none does.
+         */
+        private Builder without(Predicate<Class<?>> filter) {
+            if (classes.stream().noneMatch(filter)) return this;
+            Builder remaining = new Builder();
+            for (Class<?> clazz : classes) {
+                if (!filter.test(clazz)) remaining.add(clazz, qualifiers.get(clazz));
+            }
+            return remaining;
+        }
+
+        private boolean isEmpty() {
+            return classes.isEmpty();
+        }
+
+        private boolean contains(String className) {
+            for (Class<?> implementationClass : classes) {
+                if (implementationClass.getName().equals(className)) return true;
+            }
+            return false;
+        }
+
+        private Implementations snapshot() {
+            if (snapshot == null) {
+                snapshot = new Implementations(Collections.unmodifiableSet(new LinkedHashSet<>(classes)),
+                        Map.copyOf(qualifiers), Map.copyOf(byName));
             }
+            return snapshot;
         }
-        throw new IoCException(errorMessage);
     }
-}
\ No newline at end of file
+}
@@ -1,4 +1,43 @@
 package ru.ckateptb.commons.ioc.core;
 
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
 public interface IoCHolder {
+    /**
+     * Pool used to create independent components in parallel during init, or {@code null}, the default, to create
+     * them one by one on the calling thread. Components, their {@code @PostConstruct} methods and the classpath scan
+     * run on the workers of the pool, so only holders whose components do not depend on the initializing thread
+     * should return one, e.g. {@link ForkJoinPool#commonPool()}; {@code @SingleThreaded} components stay on the
+     * calling thread anyway.
+     */
+    default ForkJoinPool getInstantiationPool() {
+        return null;
+    }
+
+    /**
+     * Executor of {@code @Scheduled} tasks that are not {@code async}, e.g. the server main thread, or {@code null}
+     * to run them one at a time on a thread owned by the scheduler.
+     */
+    default Executor getMainThreadExecutor() {
+        return null;
+    }
+
+    /**
+     * Directory of the warm-start cache, or {@code null} to scan and resolve the components on every start. The
+     * cache is rebuilt whenever a jar or class directory of the class loader changes; the package filter passed to
+     * {@code IoC.init} is assumed to give the same answers on every start.
+     */
+    default Path getCacheDirectory() {
+        return null;
+    }
+
+    /**
+     * Property {@code @ConditionalOnProperty} components are checked against, e.g. a value of the plugin
+     * configuration, {@code null} when it is not set.
+     */
+    default String getProperty(String name) {
+        return System.getProperty(name);
+    }
 }
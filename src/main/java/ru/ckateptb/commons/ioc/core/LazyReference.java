@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import ru.ckateptb.commons.ioc.exceptions.IoCException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Bean resolved on first use and remembered afterwards. Backs {@link Provider} and {@code @Lazy} injection points,
+ * either directly as a {@link Supplier} or behind an interface proxy.
+ */
+public class LazyReference<T> implements Provider<T> {
+    private final Callable<T> resolver;
+    private volatile T value;
+
+    public LazyReference(Callable<T> resolver) {
+        this.resolver = resolver;
+    }
+
+    @Override
+    public T get() {
+        T result = value;
+        if (result == null) {
+            synchronized (this) {
+                result = value;
+                if (result == null) {
+                    try {
+                        result = resolver.call();
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IoCException(e);
+                    }
+                    value = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Proxy implementing the interface that forwards every call, {@code equals}, {@code hashCode} and
+     * {@code toString} included, to the resolved bean.
+     */
+    @SuppressWarnings("unchecked")
+    public T asProxy(Class<?> interfaceClass) {
+        return (T) Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class<?>[]{interfaceClass}, (proxy, method, args) -> {
+            try {
+                return method.invoke(get(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+}
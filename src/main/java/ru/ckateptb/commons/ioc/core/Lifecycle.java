@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import ru.ckateptb.commons.ioc.annotations.PostConstruct;
+import ru.ckateptb.commons.ioc.annotations.PreDestroy;
+import ru.ckateptb.commons.ioc.exceptions.IoCException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Post-construct and pre-destroy callbacks of the beans of one context.
+ * <p>
+ * Post-construct methods that return a {@link CompletionStage} or are marked {@code async} are tracked until the
+ * context is {@linkplain #signalReady() initialized}; {@link #getReady()} completes once all of them have. Beans are
+ * registered with the beans injected into them, {@link #destroy(Function)} runs their {@link PreDestroy} methods
+ * in reverse dependency order: a bean waits for every bean depending on it, independent branches run concurrently.
+ * <p>
+ * Every bean also records its origin, the component or configuration class it was created from, so the beans of
+ * changed classes and everything depending on them can be {@linkplain #getAffectedOrigins(Predicate) found} and
+ * destroyed without touching the rest.
+ */
+public class Lifecycle {
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+    private static final ComponentInjector.MethodInjector[] NO_INJECTORS = new ComponentInjector.MethodInjector[0];
+    private final Map<Object, Node> nodes = new IdentityHashMap<>();
+    private final List<Node> order = new ArrayList<>();
+    private final Map<Class<?>, List<Node>> byOrigin = new HashMap<>();
+    private final List<CompletableFuture<?>> pending = new ArrayList<>();
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private boolean signalled;
+
+    /**
+     * Runs the post-construct methods of a wired bean. A synchronous method that throws fails with
+     * {@link InvocationTargetException}, the result of the others is awaited by {@link #getReady()}.
+     */
+    public void postConstruct(Object bean, ComponentInjector.MethodInjector[] postConstructs, Executor asyncExecutor)
+            throws InvocationTargetException {
+        for (ComponentInjector.MethodInjector post : postConstructs) {
+            CompletableFuture<?> future;
+            if (post.getMethod().getAnnotation(PostConstruct.class).async()) {
+                future = CompletableFuture.supplyAsync(() -> invoke(post, bean), asyncExecutor).thenCompose(Lifecycle::await);
+            } else {
+                Object result = post.invoke(bean, NO_ARGUMENTS);
+                if (!(result instanceof CompletionStage<?> stage)) continue;
+                future = stage.toCompletableFuture();
+            }
+            track(future, post.getMethod().toString());
+        }
+    }
+
+    /**
+     * Tracks the result of a post-construct method, described as {@code method} when it fails.
+     */
+    public void track(CompletionStage<?> stage, String method) {
+        track(stage.toCompletableFuture().handle((result, throwable) -> {
+            if (throwable == null) return null;
+            throw new CompletionException(new IoCException("PostConstruct " + method + " failed", unwrap(throwable)));
+        }));
+    }
+
+    private synchronized void track(CompletableFuture<?> future) {
+        if (!signalled) {
+            pending.add(future);
+            return;
+        }
+        // the context is ready already, a failure of a bean created later has no one else to report to
+        future.whenComplete((result, throwable) -> {
+            if (throwable != null) unwrap(throwable).printStackTrace();
+        });
+    }
+
+    /**
+     * Marks the context initialized, {@link #getReady()} completes once every post-construct method tracked so far
+     * has completed, exceptionally when one of them failed.
+     */
+    public void signalReady() {
+        CompletableFuture<?>[] awaited;
+        synchronized (this) {
+            if (signalled) return;
+            signalled = true;
+            awaited = pending.toArray(new CompletableFuture<?>[0]);
+            pending.clear();
+        }
+        CompletableFuture.allOf(awaited).whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                ready.complete(null);
+            } else {
+                ready.completeExceptionally(unwrap(throwable));
+            }
+        });
+    }
+
+    public CompletableFuture<Void> getReady() {
+        return ready;
+    }
+
+    /**
+     * Registers a bean with the class it was created from, {@code null} for beans registered as they are, and the
+     * beans injected into it; beans that are not registered are left out of the order.
+     */
+    public void register(Object bean, Class<?> origin, Collection<?> dependencies) {
+        register(bean, origin, dependencies, true);
+    }
+
+    /**
+     * Registers a bean like {@link #register(Object, Class, Collection)}, {@code callbacks} is {@code false} when its
+     * class is known to declare no {@link PreDestroy} methods, so it is not introspected on destruction.
+     */
+    public synchronized void register(Object bean, Class<?> origin, Collection<?> dependencies, boolean callbacks) {
+        if (nodes.containsKey(bean)) return;
+        Node node = new Node(bean, origin, callbacks);
+        for (Object dependency : dependencies) {
+            Node dependencyNode = nodes.get(dependency);
+            if (dependencyNode != null) {
+                dependencyNode.dependents.add(node);
+                node.dependencies.add(dependencyNode);
+            }
+        }
+        nodes.put(bean, node);
+        order.add(node);
+        if (origin != null) byOrigin.computeIfAbsent(origin, key -> new ArrayList<>()).add(node);
+    }
+
+    /**
+     * Origins of the beans that have to be recreated when the matching origins change: those origins and,
+     * transitively, the origins of every bean depending on one of their beans. All beans of an origin are affected
+     * together, since a configuration creates its beans at once.
+     */
+    public synchronized Set<Class<?>> getAffectedOrigins(Predicate<Class<?>> changed) {
+        Set<Class<?>> origins = new LinkedHashSet<>();
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        for (Class<?> origin : byOrigin.keySet()) {
+            if (changed.test(origin)) queue.add(origin);
+        }
+        while (!queue.isEmpty()) {
+            Class<?> origin = queue.poll();
+            if (!origins.add(origin)) continue;
+            for (Node node : byOrigin.get(origin)) {
+                for (Node dependent : node.dependents) {
+                    if (dependent.origin != null && !origins.contains(dependent.origin)) queue.add(dependent.origin);
+                }
+            }
+        }
+        return origins;
+    }
+
+    /**
+     * Beans created from the origins, in registration order.
+     */
+    public synchronized List<Object> getBeans(Set<Class<?>> origins) {
+        List<Object> beans = new ArrayList<>();
+        for (Node node : order) {
+            if (node.origin != null && origins.contains(node.origin)) beans.add(node.bean);
+        }
+        return beans;
+    }
+
+    /**
+     * Registered beans in registration order, each with the class it was created from and the registered beans
+     * injected into it.
+     */
+    public synchronized List<Registration> getRegistrations() {
+        List<Registration> registrations = new ArrayList<>(order.size());
+        for (Node node : order) {
+            List<Object> dependencies = new ArrayList<>(node.dependencies.size());
+            for (Node dependency : node.dependencies) {
+                dependencies.add(dependency.bean);
+            }
+            registrations.add(new Registration(node.bean, node.origin, node.callbacks, List.copyOf(dependencies)));
+        }
+        return registrations;
+    }
+
+    /**
+     * Destroys every registered bean and forgets them. The pre-destroy methods of a bean run on the executor chosen
+     * for it; the returned future completes when all beans are done, failures and timeouts are reported and do not
+     * stop the beans the failed one depends on.
+     */
+    public CompletableFuture<Void> destroy(Function<Object, Executor> executors) {
+        List<Node> nodes;
+        synchronized (this) {
+            nodes = new ArrayList<>(order);
+            order.clear();
+            byOrigin.clear();
+            this.nodes.clear();
+        }
+        return destroy(nodes, executors);
+    }
+
+    /**
+     * Destroys and forgets the beans created from the origins, like {@link #destroy(Function)}. Beans created from
+     * other origins are expected not to depend on them, see {@link #getAffectedOrigins(Predicate)}.
+     */
+    public CompletableFuture<Void> destroy(Set<Class<?>> origins, Function<Object, Executor> executors) {
+        List<Node> nodes = new ArrayList<>();
+        synchronized (this) {
+            order.removeIf(node -> {
+                if (node.origin == null || !origins.contains(node.origin)) return false;
+                nodes.add(node);
+                this.nodes.remove(node.bean);
+                return true;
+            });
+            origins.forEach(byOrigin::remove);
+            Set<Node> removed = new HashSet<>(nodes);
+            for (Node node : nodes) {
+                for (Node dependency : node.dependencies) {
+                    if (!removed.contains(dependency)) dependency.dependents.remove(node);
+                }
+            }
+        }
+        return destroy(nodes, executors);
+    }
+
+    private static CompletableFuture<Void> destroy(List<Node> nodes, Function<Object, Executor> executors) {
+        Map<Node, CompletableFuture<Void>> destroyed = new HashMap<>(nodes.size());
+        // dependents are always registered after their dependencies
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node node = nodes.get(i);
+            List<CompletableFuture<?>> awaited = new ArrayList<>(node.dependents.size());
+            for (Node dependent : node.dependents) {
+                CompletableFuture<Void> future = destroyed.get(dependent);
+                if (future != null) awaited.add(future);
+            }
+            CompletableFuture<Void> start = awaited.isEmpty() ?
+                    CompletableFuture.completedFuture(null) : CompletableFuture.allOf(awaited.toArray(new CompletableFuture<?>[0]));
+            ComponentInjector.MethodInjector[] preDestroys = node.getPreDestroyMethods();
+            destroyed.put(node, preDestroys.length == 0 ? start :
+                    start.thenCompose(ignored -> destroy(node.bean, preDestroys, executors.apply(node.bean))));
+        }
+        return CompletableFuture.allOf(destroyed.values().toArray(new CompletableFuture<?>[0]));
+    }
+
+    private static CompletableFuture<Void> destroy(Object bean, ComponentInjector.MethodInjector[] preDestroys, Executor executor) {
+        long timeout = 0;
+        for (ComponentInjector.MethodInjector injector : preDestroys) {
+            PreDestroy preDestroy = injector.getMethod().getAnnotation(PreDestroy.class);
+            timeout += preDestroy.unit().toNanos(preDestroy.timeout());
+        }
+        long nanos = timeout;
+        return CompletableFuture.supplyAsync(() -> {
+            List<CompletableFuture<?>> stages = new ArrayList<>();
+            for (ComponentInjector.MethodInjector injector : preDestroys) {
+                Object result = invoke(injector, bean);
+                if (result instanceof CompletionStage<?> stage) stages.add(stage.toCompletableFuture());
+            }
+            return CompletableFuture.allOf(stages.toArray(new CompletableFuture<?>[0]));
+        }, executor).thenCompose(Function.identity()).orTimeout(nanos, TimeUnit.NANOSECONDS).exceptionally(throwable -> {
+            Throwable cause = unwrap(throwable);
+            if (cause instanceof TimeoutException) {
+                new IoCException("PreDestroy of " + bean.getClass().getName() + " did not complete within "
+                        + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms").printStackTrace();
+            } else {
+                new IoCException("PreDestroy of " + bean.getClass().getName() + " failed", cause).printStackTrace();
+            }
+            return null;
+        });
+    }
+
+    private static Object invoke(ComponentInjector.MethodInjector injector, Object bean) {
+        try {
+            return injector.invoke(bean, NO_ARGUMENTS);
+        } catch (InvocationTargetException e) {
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    private static CompletableFuture<?> await(Object result) {
+        return result instanceof CompletionStage<?> stage ? stage.toCompletableFuture() : CompletableFuture.completedFuture(result);
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        while ((throwable instanceof CompletionException || throwable instanceof ExecutionException) && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+
+    /**
+     * A registered bean, see {@link #register(Object, Class, Collection, boolean)}.
+     */
+    public record Registration(Object bean, Class<?> origin, boolean callbacks, List<Object> dependencies) {
+    }
+
+    private static class Node {
+        private final Object bean;
+        private final Class<?> origin;
+        private final boolean callbacks;
+        private final List<Node> dependents = new ArrayList<>();
+        private final List<Node> dependencies = new ArrayList<>();
+
+        private Node(Object bean, Class<?> origin, boolean callbacks) {
+            this.bean = bean;
+            this.origin = origin;
+            this.callbacks = callbacks;
+        }
+
+        private ComponentInjector.MethodInjector[] getPreDestroyMethods() {
+            if (!callbacks) return NO_INJECTORS;
+            ClassLoader loader = bean.getClass().getClassLoader();
+            // JDK classes carry no @PreDestroy methods and may not be opened for reflection
+            if (loader == null || loader == ClassLoader.getPlatformClassLoader()) return NO_INJECTORS;
+            return ComponentInjector.preDestroyMethods(bean.getClass());
+        }
+    }
+}
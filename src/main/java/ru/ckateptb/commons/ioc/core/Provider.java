@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import java.util.function.Supplier;
+
+/**
+ * Handle to a bean that is resolved on the first {@link #get()} and cached afterwards, so later calls are a single
+ * volatile read. Injected into {@code @Autowired} fields, constructor and setter parameters of type
+ * {@code Provider<T>} without any further annotation.
+ */
+@FunctionalInterface
+public interface Provider<T> extends Supplier<T> {
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Task registered with a {@link TaskScheduler}, together with the statistics of its runs. A run that takes longer
+ * than the period, or is still going when the next one is due, counts as an overrun; in the latter case the due run
+ * is skipped.
+ */
+@Getter
+public class ScheduledTask {
+    private final String name;
+    @Getter(AccessLevel.NONE)
+    private final Runnable action;
+    private final long periodNanos;
+    private final boolean async;
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean running = new AtomicBoolean();
+    @Getter(AccessLevel.NONE)
+    private final LongAdder runs = new LongAdder();
+    @Getter(AccessLevel.NONE)
+    private final LongAdder overruns = new LongAdder();
+    @Getter(AccessLevel.NONE)
+    private final LongAdder totalNanos = new LongAdder();
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong maxNanos = new AtomicLong();
+    private volatile long lastRunNanos;
+    private volatile boolean cancelled;
+    // wheel position, only touched by the timer thread
+    @Getter(AccessLevel.NONE)
+    long deadline;
+    @Getter(AccessLevel.NONE)
+    long remainingRounds;
+
+    ScheduledTask(String name, Runnable action, long deadline, long periodNanos, boolean async) {
+        this.name = name;
+        this.action = action;
+        this.deadline = deadline;
+        this.periodNanos = periodNanos;
+        this.async = async;
+    }
+
+    public boolean isPeriodic() {
+        return periodNanos > 0;
+    }
+
+    /**
+     * Stops further runs, a run in progress is not interrupted.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public long getRunCount() {
+        return runs.sum();
+    }
+
+    public long getOverrunCount() {
+        return overruns.sum();
+    }
+
+    public long getTotalRunTime(TimeUnit unit) {
+        return unit.convert(totalNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxRunTime(TimeUnit unit) {
+        return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getAverageRunTime(TimeUnit unit) {
+        long count = runs.sum();
+        return count == 0 ? 0 : unit.convert(totalNanos.sum() / count, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Claims the task for a run, {@code false} when the previous run has not finished yet.
+     */
+    boolean tryStart() {
+        if (running.compareAndSet(false, true)) return true;
+        overruns.increment();
+        return false;
+    }
+
+    void abort() {
+        running.set(false);
+    }
+
+    void run() {
+        long start = System.nanoTime();
+        try {
+            if (!cancelled) action.run();
+        } catch (Throwable throwable) {
+            throwable.printStackTrace();
+        } finally {
+            long duration = System.nanoTime() - start;
+            runs.increment();
+            totalNanos.add(duration);
+            maxNanos.accumulateAndGet(duration, Math::max);
+            lastRunNanos = duration;
+            if (isPeriodic() && duration > periodNanos) overruns.increment();
+            running.set(false);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " [runs=" + getRunCount() + ", overruns=" + getOverrunCount()
+                + ", avg=" + getAverageRunTime(TimeUnit.MICROSECONDS) + "us, max=" + getMaxRunTime(TimeUnit.MICROSECONDS) + "us]";
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * On-disk snapshot of what {@code IoC.init} discovered and resolved per scanned package: the component and
+ * configuration classes, the interface to implementation mapping with the qualifier of every implementation and
+ * the dependencies between components that order their creation. Conditions are evaluated on every start, the
+ * snapshot records their outcome so a package whose conditions changed is scanned again.
+ * <p>
+ * The snapshot is stored with a fingerprint of its inputs: the scanned packages and, for every root of the class
+ * loader, the size and modification time of a jar or of every file below the scanned packages of a directory. A
+ * snapshot whose fingerprint differs from the current one is ignored and replaced.
+ */
+public class StartupCache {
+    private static final int MAGIC = 0x496f4343;
+    private static final int VERSION = 2;
+    private final Map<String, PackageSnapshot> packages;
+
+    private StartupCache(Map<String, PackageSnapshot> packages) {
+        this.packages = packages;
+    }
+
+    public PackageSnapshot getPackage(String packageName) {
+        return packages.get(packageName);
+    }
+
+    public static byte[] fingerprint(Collection<String> packageNames, List<Path> roots) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        update(digest, VERSION + "\n");
+        for (String packageName : packageNames) {
+            update(digest, packageName + "\n");
+        }
+        for (Path root : roots) {
+            update(digest, root + "\n");
+            if (!Files.isDirectory(root)) {
+                BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class);
+                update(digest, attributes.size() + ":" + attributes.lastModifiedTime().toMillis() + "\n");
+                continue;
+            }
+            for (String packageName : packageNames) {
+                Path directory = root.resolve(packageName.replace('.', '/'));
+                if (!Files.isDirectory(directory)) continue;
+                try (Stream<Path> files = Files.walk(directory)) {
+                    for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        update(digest, root.relativize(file) + ":" + attributes.size() + ":"
+                                + attributes.lastModifiedTime().toMillis() + "\n");
+                    }
+                }
+            }
+        }
+        return digest.digest();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The snapshot stored in the file, {@code null} when there is none, it is unreadable or its fingerprint does not
+     * match.
+     */
+    public static StartupCache read(Path file, byte[] fingerprint) {
+        if (!Files.isRegularFile(file)) return null;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) return null;
+            byte[] stored = new byte[input.readUnsignedByte()];
+            input.readFully(stored);
+            if (!Arrays.equals(stored, fingerprint)) return null;
+            int packageCount = input.readInt();
+            Map<String, PackageSnapshot> packages = new HashMap<>(packageCount);
+            for (int p = 0; p < packageCount; p++) {
+                String packageName = input.readUTF();
+                PackageSnapshot snapshot = new PackageSnapshot();
+                int classCount = input.readInt();
+                for (int i = 0; i < classCount; i++) {
+                    snapshot.classNames.add(input.readUTF());
+                }
+                int implementationCount = input.readInt();
+                for (int i = 0; i < implementationCount; i++) {
+                    snapshot.implementations.add(new Implementation(input.readUTF(), input.readUTF(), input.readUTF()));
+                }
+                int componentCount = input.readInt();
+                for (int i = 0; i < componentCount; i++) {
+                    String component = snapshot.classNames.get(input.readInt());
+                    int dependencyCount = input.readInt();
+                    List<String> dependencies = new ArrayList<>(dependencyCount);
+                    for (int d = 0; d < dependencyCount; d++) {
+                        dependencies.add(snapshot.classNames.get(input.readInt()));
+                    }
+                    snapshot.dependencies.put(component, dependencies);
+                }
+                int conditionalCount = input.readInt();
+                for (int i = 0; i < conditionalCount; i++) {
+                    String className = input.readUTF();
+                    boolean matched = input.readBoolean();
+                    int conditionCount = input.readInt();
+                    List<Condition> conditions = new ArrayList<>(conditionCount);
+                    for (int c = 0; c < conditionCount; c++) {
+                        Condition.Kind kind = Condition.Kind.valueOf(input.readUTF());
+                        int valueCount = input.readInt();
+                        List<String> values = new ArrayList<>(valueCount);
+                        for (int v = 0; v < valueCount; v++) {
+                            values.add(input.readUTF());
+                        }
+                        conditions.add(new Condition(kind, values));
+                    }
+                    snapshot.conditionals.add(new Conditional(className, conditions, matched));
+                }
+                packages.put(packageName, snapshot);
+            }
+            return new StartupCache(packages);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the file atomically, so a crash never leaves a torn snapshot behind.
+     */
+    public static void write(Path file, byte[] fingerprint, Map<String, PackageSnapshot> packages) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeByte(fingerprint.length);
+                output.write(fingerprint);
+                output.writeInt(packages.size());
+                for (Map.Entry<String, PackageSnapshot> entry : packages.entrySet()) {
+                    PackageSnapshot snapshot = entry.getValue();
+                    output.writeUTF(entry.getKey());
+                    output.writeInt(snapshot.classNames.size());
+                    Map<String, Integer> indexes = new HashMap<>();
+                    for (String className : snapshot.classNames) {
+                        indexes.put(className, indexes.size());
+                        output.writeUTF(className);
+                    }
+                    output.writeInt(snapshot.implementations.size());
+                    for (Implementation implementation : snapshot.implementations) {
+                        output.writeUTF(implementation.implementationClass());
+                        output.writeUTF(implementation.interfaceClass());
+                        output.writeUTF(implementation.qualifier());
+                    }
+                    output.writeInt(snapshot.dependencies.size());
+                    for (Map.Entry<String, List<String>> dependencies : snapshot.dependencies.entrySet()) {
+                        output.writeInt(indexes.get(dependencies.getKey()));
+                        output.writeInt(dependencies.getValue().size());
+                        for (String dependency : dependencies.getValue()) {
+                            output.writeInt(indexes.get(dependency));
+                        }
+                    }
+                    output.writeInt(snapshot.conditionals.size());
+                    for (Conditional conditional : snapshot.conditionals) {
+                        output.writeUTF(conditional.className());
+                        output.writeBoolean(conditional.matched());
+                        output.writeInt(conditional.conditions().size());
+                        for (Condition condition : conditional.conditions()) {
+                            output.writeUTF(condition.getKind().name());
+                            output.writeInt(condition.getValues().size());
+                            for (String value : condition.getValues()) {
+                                output.writeUTF(value);
+                            }
+                        }
+                    }
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * What was found in one package. Dependencies only reference classes of the same package.
+     */
+    @Getter
+    public static class PackageSnapshot {
+        private final List<String> classNames = new ArrayList<>();
+        private final List<Implementation> implementations = new ArrayList<>();
+        private final Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        /**
+         * Classes of the package with conditions, whether they were loaded or not.
+         */
+        private final List<Conditional> conditionals = new ArrayList<>();
+    }
+
+    /**
+     * A class with conditions and whether they held when the snapshot was recorded.
+     */
+    public record Conditional(String className, List<Condition> conditions, boolean matched) {
+    }
+
+    /**
+     * An implementation of an interface, with the qualifier of the implementation class or {@code ""}.
+     */
+    public record Implementation(String implementationClass, String interfaceClass, String qualifier) {
+    }
+}
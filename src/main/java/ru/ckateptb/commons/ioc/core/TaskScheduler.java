@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import ru.ckateptb.commons.ioc.exceptions.IoCException;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs {@code @Scheduled} tasks of one context on a hashed-wheel timer: a single thread advances a ring of buckets
+ * once per tick and only looks at the bucket of the current tick, so adding, cancelling and firing a task is O(1)
+ * whatever the number of tasks. Deadlines are rounded up to the {@link #TICK} granularity; the timer thread parks
+ * while no task is scheduled and is only started by the first task.
+ * <p>
+ * The timer thread never runs the tasks itself. Asynchronous tasks go to virtual threads when the runtime has them
+ * and to a cached thread pool otherwise, the others go to the main thread executor.
+ */
+public class TaskScheduler {
+    public static final long TICK = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int WHEEL_SIZE = 512;
+    private static final int MASK = WHEEL_SIZE - 1;
+    private final List<ScheduledTask> tasks = new CopyOnWriteArrayList<>();
+    private final Queue<ScheduledTask> pending = new ConcurrentLinkedQueue<>();
+    private final Executor mainThreadExecutor;
+    private final List<ExecutorService> ownedExecutors = new ArrayList<>();
+    private Executor asyncExecutor;
+    private Executor syncExecutor;
+    private Thread timer;
+    private volatile boolean shutdown;
+
+    /**
+     * @param mainThreadExecutor executor of synchronous tasks, {@code null} to run them one at a time on a thread
+     *                           owned by the scheduler
+     */
+    public TaskScheduler(Executor mainThreadExecutor) {
+        this.mainThreadExecutor = mainThreadExecutor;
+    }
+
+    /**
+     * Runs the action after {@code delay}, then every {@code period} when it is positive.
+     */
+    public ScheduledTask schedule(String name, Runnable action, long delay, long period, TimeUnit unit, boolean async) {
+        ScheduledTask task = new ScheduledTask(name, action, System.nanoTime() + unit.toNanos(Math.max(delay, 0)),
+                unit.toNanos(Math.max(period, 0)), async);
+        synchronized (this) {
+            if (shutdown) throw new IoCException("Scheduler is shut down");
+            if (timer == null) start();
+            tasks.add(task);
+        }
+        pending.add(task);
+        LockSupport.unpark(timer);
+        return task;
+    }
+
+    /**
+     * Every task scheduled so far, cancelled and finished ones included, except those {@linkplain #cancel(Collection)
+     * cancelled through the scheduler}.
+     */
+    public List<ScheduledTask> getTasks() {
+        return Collections.unmodifiableList(tasks);
+    }
+
+    /**
+     * Cancels the tasks and forgets them: the timer drops them the next time it passes their bucket, after which
+     * nothing in the scheduler holds their actions, or the beans and class loaders those reach.
+     */
+    public void cancel(Collection<ScheduledTask> cancelled) {
+        cancelled.forEach(ScheduledTask::cancel);
+        tasks.removeAll(cancelled);
+    }
+
+    /**
+     * Cancels every task and stops the timer. Runs in progress are completed, executors owned by the scheduler stop
+     * once they are idle; the main thread executor is left alone.
+     */
+    public synchronized void shutdown() {
+        if (shutdown) return;
+        shutdown = true;
+        tasks.forEach(ScheduledTask::cancel);
+        if (timer != null) LockSupport.unpark(timer);
+        ownedExecutors.forEach(ExecutorService::shutdown);
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    private void start() {
+        asyncExecutor = own(newVirtualThreadExecutor());
+        syncExecutor = mainThreadExecutor != null ? mainThreadExecutor :
+                own(Executors.newSingleThreadExecutor(daemon("IoC-main")));
+        timer = daemon("IoC-scheduler").newThread(this::work);
+        timer.start();
+    }
+
+    private ExecutorService own(ExecutorService executor) {
+        ownedExecutors.add(executor);
+        return executor;
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            // Java 21+, looked up reflectively as the library targets Java 17
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(daemon("IoC-async"));
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void work() {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Deque<ScheduledTask>[] wheel = new Deque[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        long startTime = System.nanoTime();
+        long tick = 0;
+        int size = 0;
+        List<ScheduledTask> due = new ArrayList<>();
+        while (!shutdown) {
+            if (size == 0 && pending.isEmpty()) {
+                LockSupport.park(this);
+                tick = Math.max(tick, (System.nanoTime() - startTime) / TICK);
+                continue;
+            }
+            long sleep = startTime + tick * TICK - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+                continue;
+            }
+            ScheduledTask added;
+            while ((added = pending.poll()) != null) {
+                place(wheel, added, startTime, tick);
+                size++;
+            }
+            Iterator<ScheduledTask> bucket = wheel[(int) (tick & MASK)].iterator();
+            while (bucket.hasNext()) {
+                ScheduledTask task = bucket.next();
+                if (task.isCancelled()) {
+                    bucket.remove();
+                    size--;
+                } else if (task.remainingRounds > 0) {
+                    task.remainingRounds--;
+                } else {
+                    bucket.remove();
+                    size--;
+                    due.add(task);
+                }
+            }
+            for (ScheduledTask task : due) {
+                dispatch(task);
+                if (task.isPeriodic() && !task.isCancelled()) {
+                    long period = task.getPeriodNanos();
+                    task.deadline += period;
+                    long behind = System.nanoTime() - task.deadline;
+                    // runs missed while the timer was stalled are dropped instead of fired back to back
+                    if (behind > 0) task.deadline += (behind / period + 1) * period;
+                    place(wheel, task, startTime, tick + 1);
+                    size++;
+                }
+            }
+            due.clear();
+            tick++;
+        }
+    }
+
+    /**
+     * Puts the task into the bucket of its deadline, not earlier than {@code minTick}.
+     */
+    private static void place(Deque<ScheduledTask>[] wheel, ScheduledTask task, long startTime, long minTick) {
+        long deadlineTick = Math.max(minTick, (task.deadline - startTime + TICK - 1) / TICK);
+        task.remainingRounds = (deadlineTick - minTick) / WHEEL_SIZE;
+        wheel[(int) (deadlineTick & MASK)].add(task);
+    }
+
+    private void dispatch(ScheduledTask task) {
+        if (!task.tryStart()) return;
+        try {
+            (task.isAsync() ? asyncExecutor : syncExecutor).execute(task::run);
+        } catch (RejectedExecutionException e) {
+            task.abort();
+            if (!shutdown) e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.diagnostics;
+
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of the beans of a context, the dependencies between them and the heap they keep alive, collected by
+ * {@link FootprintCollector}. Sizes are in bytes and approximate, see {@link HeapEstimator}.
+ * <p>
+ * The retained size of a bean counts the objects only that bean reaches, so the retained sizes of the beans add up
+ * to what closing the context would free, apart from the objects several beans share. The overhead is what the
+ * container itself keeps for the context: bean and implementation lookup tables, lifecycle and event dispatch
+ * state, timings and the reflection metadata of the component classes.
+ */
+@Getter
+public class ContextFootprint {
+    private final String name;
+    private final List<Bean> beans;
+    /**
+     * Overhead of each part of the container.
+     */
+    private final Map<String, Long> overhead;
+    /**
+     * Size of the objects shared by several beans of the context.
+     */
+    private final long sharedBytes;
+
+    ContextFootprint(String name, List<Bean> beans, Map<String, Long> overhead, long sharedBytes) {
+        this.name = name;
+        this.beans = List.copyOf(beans);
+        this.overhead = Collections.unmodifiableMap(new LinkedHashMap<>(overhead));
+        this.sharedBytes = sharedBytes;
+    }
+
+    public long getRetainedBytes() {
+        return beans.stream().mapToLong(Bean::getRetainedBytes).sum();
+    }
+
+    public long getOverheadBytes() {
+        return overhead.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Retained size of the beans, the objects they share and the overhead of the container.
+     */
+    public long getTotalBytes() {
+        return getRetainedBytes() + sharedBytes + getOverheadBytes();
+    }
+
+    /**
+     * Beans with the highest retained size first.
+     */
+    public List<Bean> getLargestBeans(int limit) {
+        return beans.stream()
+                .sorted(Comparator.comparingLong(Bean::getRetainedBytes).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Dependency graph in the Graphviz DOT language, an edge leads from a bean to a bean injected into it.
+     */
+    public String toDot() {
+        StringBuilder builder = new StringBuilder("digraph ").append(dotString(name)).append(" {\n")
+                .append("  label=").append(dotString(name + ": " + beans.size() + " beans, retained "
+                        + format(getRetainedBytes()) + ", shared " + format(sharedBytes) + ", overhead "
+                        + format(getOverheadBytes()))).append(";\n")
+                .append("  node [shape=box];\n");
+        for (Bean bean : beans) {
+            StringBuilder label = new StringBuilder(bean.name).append('\n')
+                    .append(bean.scope.name().toLowerCase(Locale.ROOT));
+            if (bean.thread != null) {
+                label.append(", ").append(bean.thread).append(", self ")
+                        .append(TimeUnit.NANOSECONDS.toMicros(bean.selfNanos)).append(" us");
+            }
+            label.append('\n').append(format(bean.shallowBytes)).append(" shallow, ")
+                    .append(format(bean.retainedBytes)).append(" retained");
+            builder.append("  ").append(bean.id).append(" [label=").append(dotString(label.toString()));
+            if (bean.scope == Scope.LAZY) builder.append(", style=dashed");
+            builder.append("];\n");
+        }
+        for (Bean bean : beans) {
+            for (Integer dependency : bean.dependencies) {
+                builder.append("  ").append(bean.id).append(" -> ").append(dependency).append(";\n");
+            }
+        }
+        return builder.append("}\n").toString();
+    }
+
+    /**
+     * The footprint as a JSON object; dependencies refer to the {@code id} of the beans.
+     */
+    public String toJson() {
+        StringBuilder builder = new StringBuilder("{\"name\":").append(jsonString(name))
+                .append(",\"retainedBytes\":").append(getRetainedBytes())
+                .append(",\"sharedBytes\":").append(sharedBytes)
+                .append(",\"overheadBytes\":").append(getOverheadBytes())
+                .append(",\"overhead\":{");
+        String separator = "";
+        for (Map.Entry<String, Long> part : overhead.entrySet()) {
+            builder.append(separator).append(jsonString(part.getKey())).append(':').append(part.getValue());
+            separator = ",";
+        }
+        builder.append("},\"beans\":[");
+        separator = "";
+        for (Bean bean : beans) {
+            builder.append(separator)
+                    .append("{\"id\":").append(bean.id)
+                    .append(",\"name\":").append(jsonString(bean.name))
+                    .append(",\"type\":").append(jsonString(bean.type.getName()))
+                    .append(",\"scope\":").append(jsonString(bean.scope.name()))
+                    .append(",\"origin\":").append(bean.origin == null ? "null" : jsonString(bean.origin.getName()))
+                    .append(",\"thread\":").append(bean.thread == null ? "null" : jsonString(bean.thread))
+                    .append(",\"creationNanos\":").append(bean.creationNanos)
+                    .append(",\"selfNanos\":").append(bean.selfNanos)
+                    .append(",\"shallowBytes\":").append(bean.shallowBytes)
+                    .append(",\"retainedBytes\":").append(bean.retainedBytes)
+                    .append(",\"dependencies\":").append(bean.dependencies)
+                    .append('}');
+            separator = ",";
+        }
+        return builder.append("]}").toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Footprint of ").append(name).append(": ").append(beans.size())
+                .append(" beans, retained ").append(format(getRetainedBytes())).append(", shared ")
+                .append(format(sharedBytes)).append(", overhead ").append(format(getOverheadBytes()))
+                .append("\nOverhead:\n");
+        overhead.forEach((part, bytes) -> builder.append("  ").append(part).append(' ').append(format(bytes)).append('\n'));
+        builder.append("Largest beans:\n");
+        getLargestBeans(10).forEach(bean -> builder.append("  ").append(bean).append('\n'));
+        return builder.toString();
+    }
+
+    static String format(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024.0);
+        return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024.0 * 1024));
+    }
+
+    private static String dotString(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"';
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * How a bean came into the context.
+     */
+    public enum Scope {
+        /**
+         * Registered as it is, such as the holder and the predefined beans.
+         */
+        REGISTERED,
+        /**
+         * Component or configuration created while the context was initialized.
+         */
+        SINGLETON,
+        /**
+         * {@code @Lazy} component created on first use.
+         */
+        LAZY,
+        /**
+         * Returned by a {@code @Bean} method.
+         */
+        BEAN
+    }
+
+    @Getter
+    public static class Bean {
+        /**
+         * Position of the bean in the context, in registration order.
+         */
+        private final int id;
+        /**
+         * Bean type name, followed by {@code #name} for named {@code @Bean} methods, as in {@link StartupReport}.
+         */
+        private final String name;
+        private final Class<?> type;
+        private final Scope scope;
+        /**
+         * Component or configuration class the bean was created from, {@code null} for registered beans.
+         */
+        private final Class<?> origin;
+        /**
+         * Thread that created the bean, {@code null} when it was not created by the context.
+         */
+        private final String thread;
+        private final long creationNanos;
+        private final long selfNanos;
+        private final long shallowBytes;
+        private final long retainedBytes;
+        /**
+         * Ids of the beans of the context injected into this one.
+         */
+        private final List<Integer> dependencies;
+
+        Bean(int id, String name, Class<?> type, Scope scope, Class<?> origin, StartupReport.Bean timings,
+             long shallowBytes, long retainedBytes, List<Integer> dependencies) {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+            this.scope = scope;
+            this.origin = origin;
+            this.thread = timings == null ? null : timings.getThread();
+            this.creationNanos = timings == null ? 0 : timings.getTotalNanos();
+            this.selfNanos = timings == null ? 0 : timings.getSelfNanos();
+            this.shallowBytes = shallowBytes;
+            this.retainedBytes = retainedBytes;
+            this.dependencies = List.copyOf(dependencies);
+        }
+
+        @Override
+        public String toString() {
+            return name + " [" + scope.name().toLowerCase(Locale.ROOT) + "] retained " + format(retainedBytes)
+                    + ", shallow " + format(shallowBytes) + ", " + dependencies.size() + " dependencies";
+        }
+    }
+}
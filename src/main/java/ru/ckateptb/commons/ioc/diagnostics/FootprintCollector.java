@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.diagnostics;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Collects the beans and container structures of one context into a {@link ContextFootprint}. Beans are added in
+ * registration order with the beans injected into them; dependencies that were not added are left out of the graph.
+ */
+public class FootprintCollector {
+    private final String name;
+    private final StartupReport startup;
+    private final Predicate<Class<?>> entered;
+    private final List<Object> beans = new ArrayList<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<Object> boundary = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<String, List<Object>> overhead = new LinkedHashMap<>();
+
+    /**
+     * @param startup timings the creating thread and cost of the beans are taken from
+     * @param entered whether the fields of objects of a non-JDK class are walked, see {@link HeapEstimator}
+     */
+    public FootprintCollector(String name, StartupReport startup, Predicate<Class<?>> entered) {
+        this.name = name;
+        this.startup = startup;
+        this.entered = entered;
+    }
+
+    public void addBean(Object bean, Class<?> type, String name, ContextFootprint.Scope scope, Class<?> origin,
+                        Collection<?> dependencies) {
+        beans.add(bean);
+        entries.add(new Entry(StartupRecorder.key(type, name), type, scope, origin, List.copyOf(dependencies)));
+    }
+
+    /**
+     * Objects that belong to something else, such as the beans of a parent context, and are neither counted nor
+     * entered.
+     */
+    public void addBoundary(Collection<?> objects) {
+        boundary.addAll(objects);
+    }
+
+    /**
+     * Structures of the container counted as the overhead of the part, apart from the beans they reference.
+     */
+    public void addOverhead(String part, Object... structures) {
+        overhead.computeIfAbsent(part, key -> new ArrayList<>()).addAll(Arrays.asList(structures));
+    }
+
+    public ContextFootprint collect() {
+        Set<Object> excluded = Collections.newSetFromMap(new IdentityHashMap<>());
+        excluded.addAll(boundary);
+        excluded.addAll(beans);
+        HeapEstimator estimator = new HeapEstimator(excluded, entered);
+        HeapEstimator.Retention retention = estimator.retain(beans);
+        Map<Object, Integer> ids = new IdentityHashMap<>();
+        for (int i = 0; i < beans.size(); i++) {
+            ids.putIfAbsent(beans.get(i), i);
+        }
+        List<ContextFootprint.Bean> collected = new ArrayList<>(beans.size());
+        for (int i = 0; i < beans.size(); i++) {
+            Entry entry = entries.get(i);
+            List<Integer> dependencies = new ArrayList<>(entry.dependencies.size());
+            for (Object dependency : entry.dependencies) {
+                Integer id = ids.get(dependency);
+                if (id != null) dependencies.add(id);
+            }
+            collected.add(new ContextFootprint.Bean(i, entry.key, entry.type, entry.scope, entry.origin,
+                    startup.getBean(entry.key), HeapEstimator.shallowSize(beans.get(i)), retention.retained()[i],
+                    dependencies));
+        }
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        overhead.forEach((part, structures) -> {
+            long size = 0;
+            for (Object structure : structures) {
+                size += estimator.measure(structure);
+            }
+            sizes.put(part, size);
+        });
+        return new ContextFootprint(name, collected, sizes, retention.shared());
+    }
+
+    private record Entry(String key, Class<?> type, ContextFootprint.Scope scope, Class<?> origin,
+                         List<Object> dependencies) {
+    }
+}
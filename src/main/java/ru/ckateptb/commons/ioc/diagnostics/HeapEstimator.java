@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.diagnostics;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Approximate heap size of object graphs, measured by walking them with reflection.
+ * <p>
+ * Sizes follow the HotSpot layout: objects are aligned to 8 bytes, headers take 12 bytes and references 4 with
+ * compressed oops, which are assumed below a 32 GB heap, 16 and 8 bytes otherwise. Fields of JDK classes cannot be
+ * read from outside their module: JDK collections and maps are walked through their public API with their internal
+ * nodes estimated, strings and string builders count their characters, other such objects count their shallow size
+ * only.
+ * <p>
+ * Classes, class loaders, threads and enum constants are shared by everything and never counted. Objects of the
+ * boundary are neither counted nor entered, neither are the fields of objects whose class is not
+ * {@linkplain #HeapEstimator(Collection, Predicate) entered}: objects owned by another plugin or by the server count
+ * their shallow size only. A single walk stops after {@value #MAX_OBJECTS} objects.
+ */
+public class HeapEstimator {
+    public static final int MAX_OBJECTS = 1 << 20;
+    private static final boolean COMPRESSED_OOPS = Runtime.getRuntime().maxMemory() < 32L << 30;
+    private static final int HEADER = COMPRESSED_OOPS ? 12 : 16;
+    private static final int REFERENCE = COMPRESSED_OOPS ? 4 : 8;
+    private static final int ARRAY_HEADER = COMPRESSED_OOPS ? 16 : 24;
+    private static final int SHARED = -1;
+    private static final ClassValue<Layout> layouts = new ClassValue<>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return layout(type);
+        }
+    };
+    private final Set<Object> boundary = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Object> measured = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Predicate<Class<?>> entered;
+
+    /**
+     * @param boundary objects that are neither counted nor entered, unless a walk starts from one of them
+     * @param entered  whether the fields of objects of a non-JDK class are walked
+     */
+    public HeapEstimator(Collection<?> boundary, Predicate<Class<?>> entered) {
+        this.boundary.addAll(boundary);
+        this.entered = entered;
+    }
+
+    /**
+     * Size of the object itself, the backing storage of JDK strings, collections and maps included.
+     */
+    public static long shallowSize(Object object) {
+        Class<?> type = object.getClass();
+        if (type.isArray()) {
+            return align(ARRAY_HEADER + (long) Array.getLength(object) * size(type.getComponentType()));
+        }
+        Layout layout = layouts.get(type);
+        long size = layout.size;
+        if (layout.references != null) return size;
+        try {
+            if (object instanceof CharSequence chars) {
+                size += align(ARRAY_HEADER + chars.length());
+            } else if (object instanceof Map<?, ?> map) {
+                int entries = map.size();
+                size += entries * align(HEADER + 3L * REFERENCE + 4) + align(ARRAY_HEADER + (long) REFERENCE * capacity(entries));
+            } else if (object instanceof Collection<?> collection) {
+                size += align(ARRAY_HEADER + (long) REFERENCE * collection.size());
+            }
+        } catch (RuntimeException ignored) {
+            // a view whose size cannot be computed counts as its shallow size
+        }
+        return size;
+    }
+
+    /**
+     * Size of the objects reachable from the root that no earlier call of this estimator has counted, so measuring
+     * several structures does not count the objects they share twice.
+     */
+    public long measure(Object root) {
+        if (root == null || measured.contains(root)) return 0;
+        long[] size = new long[1];
+        walk(root, measured, Collections.emptySet(), object -> size[0] += shallowSize(object));
+        return size[0];
+    }
+
+    /**
+     * Retained size of every root: the size of the objects reachable from it, without entering the other roots,
+     * that no other root reaches. An object shared by several roots is retained by none of them, so the sizes do not
+     * overlap; objects kept reachable from outside the roots are counted nonetheless.
+     */
+    public Retention retain(List<?> roots) {
+        Set<Object> stop = Collections.newSetFromMap(new IdentityHashMap<>());
+        stop.addAll(roots);
+        Map<Object, Owner> owners = new IdentityHashMap<>();
+        for (int i = 0; i < roots.size(); i++) {
+            int root = i;
+            walk(roots.get(i), Collections.newSetFromMap(new IdentityHashMap<>()), stop, object -> {
+                Owner owner = owners.get(object);
+                if (owner == null) {
+                    owners.put(object, new Owner(root, shallowSize(object)));
+                } else if (owner.root != root) {
+                    owner.root = SHARED;
+                }
+            });
+        }
+        long[] retained = new long[roots.size()];
+        long shared = 0;
+        for (Owner owner : owners.values()) {
+            if (owner.root == SHARED) {
+                shared += owner.size;
+            } else {
+                retained[owner.root] += owner.size;
+            }
+        }
+        return new Retention(retained, shared);
+    }
+
+    private void walk(Object root, Set<Object> visited, Set<Object> stop, Consumer<Object> visitor) {
+        Deque<Object> pending = new ArrayDeque<>();
+        visited.add(root);
+        pending.push(root);
+        Consumer<Object> follow = reference -> {
+            if (reference == null || isShared(reference) || boundary.contains(reference) || stop.contains(reference)) return;
+            if (visited.add(reference)) pending.push(reference);
+        };
+        for (int count = 0; !pending.isEmpty() && count < MAX_OBJECTS; count++) {
+            Object object = pending.pop();
+            visitor.accept(object);
+            if (isEntered(object.getClass())) references(object, follow);
+        }
+    }
+
+    private boolean isEntered(Class<?> type) {
+        if (type.isArray()) return true;
+        ClassLoader loader = type.getClassLoader();
+        return loader == null || loader == ClassLoader.getPlatformClassLoader() || entered.test(type);
+    }
+
+    private static boolean isShared(Object object) {
+        return object instanceof Class || object instanceof ClassLoader || object instanceof Thread
+                || object instanceof ThreadGroup || object instanceof Module || object instanceof Enum;
+    }
+
+    private static void references(Object object, Consumer<Object> consumer) {
+        if (object instanceof Object[] array) {
+            for (Object element : array) {
+                consumer.accept(element);
+            }
+            return;
+        }
+        if (object.getClass().isArray()) return;
+        Field[] references = layouts.get(object.getClass()).references;
+        if (references != null) {
+            for (Field field : references) {
+                try {
+                    consumer.accept(field.get(object));
+                } catch (IllegalAccessException ignored) {
+                    // made accessible when the layout was computed
+                }
+            }
+            return;
+        }
+        try {
+            if (object instanceof Map<?, ?> map) {
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    consumer.accept(entry.getKey());
+                    consumer.accept(entry.getValue());
+                }
+            } else if (object instanceof Collection<?> collection) {
+                for (Object element : collection) {
+                    consumer.accept(element);
+                }
+            }
+        } catch (RuntimeException ignored) {
+            // modified concurrently, the elements seen so far are counted
+        }
+    }
+
+    /**
+     * Instance size of the class and its reference fields, {@code null} when one of them cannot be read.
+     */
+    private static Layout layout(Class<?> type) {
+        long size = HEADER;
+        List<Field> references = new ArrayList<>();
+        boolean readable = true;
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) continue;
+                size += size(field.getType());
+                if (field.getType().isPrimitive() || !readable) continue;
+                if (field.trySetAccessible()) {
+                    references.add(field);
+                } else {
+                    readable = false;
+                }
+            }
+        }
+        return new Layout(align(size), readable ? references.toArray(new Field[0]) : null);
+    }
+
+    private static int size(Class<?> type) {
+        if (type == long.class || type == double.class) return 8;
+        if (type == int.class || type == float.class) return 4;
+        if (type == short.class || type == char.class) return 2;
+        if (type == byte.class || type == boolean.class) return 1;
+        return REFERENCE;
+    }
+
+    private static long capacity(int entries) {
+        long capacity = 16;
+        while (capacity * 3 / 4 < entries) capacity <<= 1;
+        return capacity;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * Retained size of every root, in the order of the roots, and size of the objects shared by several roots.
+     */
+    public record Retention(long[] retained, long shared) {
+    }
+
+    private record Layout(long size, Field[] references) {
+    }
+
+    private static class Owner {
+        private final long size;
+        private int root;
+
+        private Owner(int root, long size) {
+            this.root = root;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder events emitted while a context starts. Thread, start time and duration are recorded by JFR
+ * itself; the events are enabled by default with no threshold and cost close to nothing while no recording runs.
+ */
+public final class IoCEvents {
+    private IoCEvents() {
+    }
+
+    @Category({"IoC", "Startup"})
+    @StackTrace(false)
+    public abstract static class BeanEvent extends Event {
+        @Label("Bean Type")
+        String beanType;
+        @Label("Qualifier")
+        String qualifier;
+    }
+
+    @Name("ru.ckateptb.commons.ioc.Scan")
+    @Label("Component Scan")
+    @Description("Lookup of the component classes of a package")
+    @Category({"IoC", "Startup"})
+    @StackTrace(false)
+    public static class Scan extends Event {
+        @Label("Package")
+        String packageName;
+        @Label("Component Classes")
+        int classCount;
+    }
+
+    @Name("ru.ckateptb.commons.ioc.ClassLoad")
+    @Label("Component Class Load")
+    @Category({"IoC", "Startup"})
+    @StackTrace(false)
+    public static class ClassLoad extends Event {
+        @Label("Class Name")
+        String className;
+    }
+
+    @Name("ru.ckateptb.commons.ioc.Creation")
+    @Label("Bean Creation")
+    @Description("Creation of a component, dependencies created meanwhile included")
+    public static class Creation extends BeanEvent {
+    }
+
+    @Name("ru.ckateptb.commons.ioc.Construction")
+    @Label("Bean Construction")
+    @Description("Constructor call of a component, after its constructor dependencies are resolved")
+    public static class Construction extends BeanEvent {
+    }
+
+    @Name("ru.ckateptb.commons.ioc.Injection")
+    @Label("Bean Injection")
+    @Description("Field and setter injection of a component")
+    public static class Injection extends BeanEvent {
+    }
+
+    @Name("ru.ckateptb.commons.ioc.PostConstruct")
+    @Label("Bean Post Construct")
+    public static class PostConstruct extends BeanEvent {
+    }
+
+    @Name("ru.ckateptb.commons.ioc.BeanMethod")
+    @Label("Bean Method")
+    @Description("Invocation of a @Bean method, its parameters resolution included")
+    public static class BeanMethod extends BeanEvent {
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.diagnostics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times the startup phases of one context: emits the matching {@link IoCEvents} and accumulates per-bean timings
+ * for {@link StartupReport}.
+ * <p>
+ * Creations nest on a thread (a constructor dependency is created inside its dependent), so every thread keeps a
+ * stack of open creations. The time a creation spends creating or waiting for its dependencies is subtracted from
+ * its own time, and the beans it resolves meanwhile become its dependencies in the report.
+ */
+public class StartupRecorder {
+    private final Map<String, BeanRecord> beans = new ConcurrentHashMap<>();
+    private final ThreadLocal<Deque<Span>> creations = new ThreadLocal<>();
+    private final AtomicInteger openCreations = new AtomicInteger();
+    private final LongAdder scanNanos = new LongAdder();
+    private final LongAdder classLoadNanos = new LongAdder();
+
+    public Span scan(String packageName) {
+        IoCEvents.Scan event = new IoCEvents.Scan();
+        event.packageName = packageName;
+        return new Span(Phase.SCAN, null, event);
+    }
+
+    public Span classLoad(String className) {
+        IoCEvents.ClassLoad event = new IoCEvents.ClassLoad();
+        event.className = className;
+        return new Span(Phase.CLASS_LOAD, null, event);
+    }
+
+    /**
+     * Whole creation of a component, constructor dependencies included.
+     */
+    public Span creation(Class<?> type) {
+        return bean(Phase.CREATION, type, null, new IoCEvents.Creation());
+    }
+
+    public Span construction(Class<?> type) {
+        return bean(Phase.CONSTRUCTION, type, null, new IoCEvents.Construction());
+    }
+
+    public Span injection(Class<?> type) {
+        return bean(Phase.INJECTION, type, null, new IoCEvents.Injection());
+    }
+
+    public Span postConstruct(Class<?> type) {
+        return bean(Phase.POST_CONSTRUCT, type, null, new IoCEvents.PostConstruct());
+    }
+
+    /**
+     * Invocation of a {@code @Bean} method, which is the whole creation of the bean it returns.
+     */
+    public Span beanMethod(Class<?> type, String name) {
+        return bean(Phase.BEAN_METHOD, type, name, new IoCEvents.BeanMethod());
+    }
+
+    /**
+     * Time the current creation spends waiting for a bean created by another thread.
+     */
+    public Span await(Class<?> type) {
+        return new Span(Phase.AWAIT, type, null);
+    }
+
+    /**
+     * Records that the creation open on the current thread resolved the bean. Once no creation is open on any thread,
+     * as for every lookup after startup, this is a single volatile read.
+     */
+    public void dependency(Class<?> type, String name) {
+        if (openCreations.get() == 0) return;
+        Span creation = currentCreation();
+        if (creation != null) {
+            record(creation.key).dependencies.add(key(type, name));
+        }
+    }
+
+    public StartupReport report() {
+        return new StartupReport(beans.values(), scanNanos.sum(), classLoadNanos.sum());
+    }
+
+    private Span bean(Phase phase, Class<?> type, String name, IoCEvents.BeanEvent event) {
+        event.beanType = type.getName();
+        event.qualifier = name;
+        return new Span(phase, type, event, key(type, name));
+    }
+
+    private Span currentCreation() {
+        Deque<Span> stack = creations.get();
+        return stack == null ? null : stack.peek();
+    }
+
+    private BeanRecord record(String key) {
+        return beans.computeIfAbsent(key, BeanRecord::new);
+    }
+
+    static String key(Class<?> type, String name) {
+        return name == null || name.equals(type.getName()) ? type.getName() : type.getName() + "#" + name;
+    }
+
+    enum Phase {
+        SCAN, CLASS_LOAD, CREATION, CONSTRUCTION, INJECTION, POST_CONSTRUCT, BEAN_METHOD, AWAIT;
+
+        private boolean opensCreation() {
+            return this == CREATION || this == BEAN_METHOD;
+        }
+    }
+
+    /**
+     * Running phase, closed by {@link #close()}.
+     */
+    public class Span implements AutoCloseable {
+        private final Phase phase;
+        private final Class<?> type;
+        private final jdk.jfr.Event event;
+        private final String key;
+        private final long start;
+        private long nestedNanos;
+
+        private Span(Phase phase, Class<?> type, jdk.jfr.Event event) {
+            this(phase, type, event, type == null ? null : type.getName());
+        }
+
+        private Span(Phase phase, Class<?> type, jdk.jfr.Event event, String key) {
+            this.phase = phase;
+            this.type = type;
+            this.event = event;
+            this.key = key;
+            if (phase.opensCreation()) {
+                Deque<Span> stack = creations.get();
+                if (stack == null) {
+                    stack = new ArrayDeque<>();
+                    creations.set(stack);
+                } else if (!stack.isEmpty()) {
+                    record(stack.peek().key).dependencies.add(key);
+                }
+                stack.push(this);
+                openCreations.incrementAndGet();
+            }
+            if (event != null) event.begin();
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Number of component classes found by a scan.
+         */
+        public void classCount(int count) {
+            if (event instanceof IoCEvents.Scan scan) scan.classCount = count;
+        }
+
+        @Override
+        public void close() {
+            long duration = System.nanoTime() - start;
+            if (event != null) event.commit();
+            switch (phase) {
+                case SCAN -> scanNanos.add(duration);
+                case CLASS_LOAD -> classLoadNanos.add(duration);
+                case CONSTRUCTION -> record(key).construction.add(duration);
+                case INJECTION -> record(key).injection.add(duration);
+                case POST_CONSTRUCT -> record(key).postConstruct.add(duration);
+                case AWAIT -> {
+                    Span parent = currentCreation();
+                    if (parent != null) parent.nestedNanos += duration;
+                }
+                case CREATION, BEAN_METHOD -> {
+                    Deque<Span> stack = creations.get();
+                    stack.pop();
+                    openCreations.decrementAndGet();
+                    if (stack.isEmpty()) {
+                        creations.remove();
+                    } else {
+                        stack.peek().nestedNanos += duration;
+                    }
+                    BeanRecord record = record(key);
+                    record.type = type;
+                    record.thread = Thread.currentThread().getName();
+                    record.total.add(duration);
+                    record.self.add(duration - nestedNanos);
+                }
+            }
+        }
+    }
+
+    static class BeanRecord {
+        final String key;
+        final Set<String> dependencies = ConcurrentHashMap.newKeySet();
+        final LongAdder construction = new LongAdder();
+        final LongAdder injection = new LongAdder();
+        final LongAdder postConstruct = new LongAdder();
+        final LongAdder total = new LongAdder();
+        final LongAdder self = new LongAdder();
+        volatile Class<?> type;
+        volatile String thread;
+
+        BeanRecord(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.diagnostics;
+
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of where the startup time of a context went. Times are in nanoseconds; the self time of a bean excludes
+ * the dependencies created or awaited while it was being created.
+ */
+public class StartupReport {
+    private final Map<String, Bean> beans = new LinkedHashMap<>();
+    private final long scanNanos;
+    private final long classLoadNanos;
+
+    StartupReport(Collection<StartupRecorder.BeanRecord> records, long scanNanos, long classLoadNanos) {
+        this.scanNanos = scanNanos;
+        this.classLoadNanos = classLoadNanos;
+        for (StartupRecorder.BeanRecord record : records) {
+            if (record.type == null) continue;
+            beans.put(record.key, new Bean(record));
+        }
+    }
+
+    public Collection<Bean> getBeans() {
+        return Collections.unmodifiableCollection(beans.values());
+    }
+
+    /**
+     * Timings of the bean named like {@link Bean#getName()}, {@code null} when it was not created by the context.
+     */
+    public Bean getBean(String name) {
+        return beans.get(name);
+    }
+
+    public long getScanTime(TimeUnit unit) {
+        return unit.convert(scanNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getClassLoadTime(TimeUnit unit) {
+        return unit.convert(classLoadNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Beans with the highest self time first.
+     */
+    public List<Bean> getSlowestBeans(int limit) {
+        return beans.values().stream()
+                .sorted(Comparator.comparingLong(Bean::getSelfNanos).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Chain of dependencies with the highest total self time, from the bean created last down to the bean created
+     * first. However many threads create beans, startup cannot be shorter than this chain.
+     */
+    public List<Bean> getCriticalPath() {
+        Map<String, Long> cost = new HashMap<>();
+        Map<String, String> next = new HashMap<>();
+        String head = null;
+        for (String key : beans.keySet()) {
+            long keyCost = cost(key, cost, next, new HashSet<>());
+            if (head == null || keyCost > cost.get(head)) head = key;
+        }
+        List<Bean> path = new ArrayList<>();
+        for (String key = head; key != null; key = next.get(key)) {
+            path.add(beans.get(key));
+        }
+        return path;
+    }
+
+    private long cost(String key, Map<String, Long> cost, Map<String, String> next, Set<String> visiting) {
+        Long known = cost.get(key);
+        if (known != null) return known;
+        Bean bean = beans.get(key);
+        // field injection allows cycles, a bean already on the path adds nothing
+        if (bean == null || !visiting.add(key)) return 0;
+        long longest = 0;
+        for (String dependency : bean.dependencies) {
+            long dependencyCost = cost(dependency, cost, next, visiting);
+            if (dependencyCost > longest && beans.containsKey(dependency)) {
+                longest = dependencyCost;
+                next.put(key, dependency);
+            }
+        }
+        visiting.remove(key);
+        long total = bean.selfNanos + longest;
+        cost.put(key, total);
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Startup report: ").append(beans.size()).append(" beans, scan ")
+                .append(getScanTime(TimeUnit.MILLISECONDS)).append(" ms, class loading ")
+                .append(getClassLoadTime(TimeUnit.MILLISECONDS)).append(" ms\nSlowest beans:\n");
+        getSlowestBeans(10).forEach(bean -> builder.append("  ").append(bean).append('\n'));
+        builder.append("Critical path:\n");
+        getCriticalPath().forEach(bean -> builder.append("  ").append(bean).append('\n'));
+        return builder.toString();
+    }
+
+    @Getter
+    public static class Bean {
+        /**
+         * Bean type name, followed by {@code #name} for named {@code @Bean} methods.
+         */
+        private final String name;
+        private final Class<?> type;
+        private final String thread;
+        private final long constructionNanos;
+        private final long injectionNanos;
+        private final long postConstructNanos;
+        private final long totalNanos;
+        private final long selfNanos;
+        /**
+         * Names of the beans resolved while this one was created.
+         */
+        private final Set<String> dependencies;
+
+        private Bean(StartupRecorder.BeanRecord record) {
+            this.name = record.key;
+            this.type = record.type;
+            this.thread = record.thread;
+            this.constructionNanos = record.construction.sum();
+            this.injectionNanos = record.injection.sum();
+            this.postConstructNanos = record.postConstruct.sum();
+            this.totalNanos = record.total.sum();
+            this.selfNanos = record.self.sum();
+            this.dependencies = Set.copyOf(record.dependencies);
+        }
+
+        @Override
+        public String toString() {
+            return name + " [" + thread + "] self " + TimeUnit.NANOSECONDS.toMicros(selfNanos) + " us, total "
+                    + TimeUnit.NANOSECONDS.toMicros(totalNanos) + " us (construct "
+                    + TimeUnit.NANOSECONDS.toMicros(constructionNanos) + ", inject "
+                    + TimeUnit.NANOSECONDS.toMicros(injectionNanos) + ", post construct "
+                    + TimeUnit.NANOSECONDS.toMicros(postConstructNanos) + ")";
+        }
+    }
+}
@@ -25,4 +25,8 @@ public class IoCException extends RuntimeException {
     public IoCException(String message) {
         super(message);
     }
+
+    public IoCException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
\ No newline at end of file
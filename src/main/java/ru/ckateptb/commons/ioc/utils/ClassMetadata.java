@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.commons.ioc.utils;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Everything {@code IoC} needs to know about a class, collected by {@link FinderUtils#getMetadata(Class)}. Members
+ * are already made accessible, the arrays must not be modified.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public class ClassMetadata {
+    private final Class<?> type;
+    /**
+     * The {@code @Autowired} constructor, otherwise the first public one, {@code null} when there is none.
+     */
+    private final Constructor<?> constructor;
+    /**
+     * Value of a {@code @Qualifier} on the class, {@code null} when absent or empty.
+     */
+    private final String qualifier;
+    private final Field[] autowiredFields;
+    private final Method[] autowiredMethods;
+    private final Method[] postConstructMethods;
+    private final Method[] preDestroyMethods;
+    private final Method[] beanMethods;
+    private final Method[] scheduledMethods;
+    private final Method[] eventListenerMethods;
+}
@@ -17,14 +17,100 @@
 
 package ru.ckateptb.commons.ioc.utils;
 
+import ru.ckateptb.commons.ioc.annotations.Autowired;
+import ru.ckateptb.commons.ioc.annotations.Bean;
+import ru.ckateptb.commons.ioc.annotations.EventListener;
+import ru.ckateptb.commons.ioc.annotations.PostConstruct;
+import ru.ckateptb.commons.ioc.annotations.PreDestroy;
+import ru.ckateptb.commons.ioc.annotations.Qualifier;
+import ru.ckateptb.commons.ioc.annotations.Scheduled;
+
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class FinderUtils {
+    private static final ClassValue<ClassMetadata> metadata = new ClassValue<>() {
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return scan(type);
+        }
+    };
+
+    /**
+     * Injection metadata of the class, collected in a single walk over its hierarchy on first use. The cache is a
+     * {@link ClassValue}, so it does not keep the class loader of the class reachable.
+     */
+    public static ClassMetadata getMetadata(Class<?> clazz) {
+        return metadata.get(clazz);
+    }
+
+    private static ClassMetadata scan(Class<?> type) {
+        List<Field> autowiredFields = new ArrayList<>();
+        List<Method> autowiredMethods = new ArrayList<>();
+        List<Method> postConstructMethods = new ArrayList<>();
+        List<Method> preDestroyMethods = new ArrayList<>();
+        List<Method> beanMethods = new ArrayList<>();
+        List<Method> scheduledMethods = new ArrayList<>();
+        List<Method> eventListenerMethods = new ArrayList<>();
+        Class<?> clazz = type;
+        while (clazz != null) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Autowired.class)) {
+                    field.setAccessible(true);
+                    autowiredFields.add(field);
+                }
+            }
+            for (Method method : clazz.getDeclaredMethods()) {
+                boolean autowired = method.isAnnotationPresent(Autowired.class);
+                boolean postConstruct = method.isAnnotationPresent(PostConstruct.class);
+                boolean preDestroy = method.isAnnotationPresent(PreDestroy.class);
+                boolean bean = method.isAnnotationPresent(Bean.class);
+                boolean scheduled = method.isAnnotationPresent(Scheduled.class);
+                boolean eventListener = method.isAnnotationPresent(EventListener.class);
+                if (!autowired && !postConstruct && !preDestroy && !bean && !scheduled && !eventListener) continue;
+                method.setAccessible(true);
+                if (autowired) autowiredMethods.add(method);
+                if (postConstruct) postConstructMethods.add(method);
+                if (preDestroy) preDestroyMethods.add(method);
+                if (bean) beanMethods.add(method);
+                if (scheduled) scheduledMethods.add(method);
+                if (eventListener) eventListenerMethods.add(method);
+            }
+            clazz = clazz.getSuperclass();
+        }
+        Qualifier qualifier = type.getAnnotation(Qualifier.class);
+        return new ClassMetadata(type, findDefaultConstructor(type),
+                qualifier == null || qualifier.value().isEmpty() ? null : qualifier.value(),
+                autowiredFields.toArray(new Field[0]),
+                autowiredMethods.toArray(new Method[0]),
+                postConstructMethods.toArray(new Method[0]),
+                preDestroyMethods.toArray(new Method[0]),
+                beanMethods.toArray(new Method[0]),
+                scheduledMethods.toArray(new Method[0]),
+                eventListenerMethods.toArray(new Method[0]));
+    }
+
+    /**
+     * The {@code @Autowired} constructor, otherwise the first public constructor, otherwise {@code null}.
+     */
+    private static Constructor<?> findDefaultConstructor(Class<?> clazz) {
+        if (clazz.isInterface() || clazz.isPrimitive() || clazz.isArray()) return null;
+        Constructor<?> defaultConstructor = findAnnotatedConstructor(clazz, Autowired.class);
+        if (defaultConstructor == null) {
+            Constructor<?>[] constructors = clazz.getConstructors();
+            if (constructors.length == 0) return null;
+            defaultConstructor = constructors[0];
+            defaultConstructor.setAccessible(true);
+        }
+        return defaultConstructor;
+    }
+
     public static Constructor<?> findAnnotatedConstructor(Class<?> clazz, Class<? extends Annotation> annotationClass) {
         for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
             if (constructor.isAnnotationPresent(annotationClass)) {
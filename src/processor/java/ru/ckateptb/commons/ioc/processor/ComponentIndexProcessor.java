@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.commons.ioc.processor;
+
+import ru.ckateptb.commons.ioc.annotations.*;
+import ru.ckateptb.commons.ioc.core.ComponentIndex;
+import ru.ckateptb.commons.ioc.core.Condition;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes {@link ComponentIndex#LOCATION} for every compilation that declares components, so {@code IoC} does not
+ * have to scan the classpath and load every class of the scanned packages.
+ * <p>
+ * Register the processor artifact of the library as an annotation processor:
+ * {@code annotationProcessor("ru.ckateptb.commons:inversion-of-control:<version>:processor")}.
+ */
+@SupportedAnnotationTypes({
+        "ru.ckateptb.commons.ioc.annotations.Component",
+        "ru.ckateptb.commons.ioc.annotations.Configuration"
+})
+public class ComponentIndexProcessor extends AbstractProcessor {
+    private final Map<String, ComponentIndex.Entry> entries = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!entries.isEmpty()) writeIndex();
+            return false;
+        }
+        Set<Element> elements = new LinkedHashSet<>();
+        elements.addAll(roundEnv.getElementsAnnotatedWith(Component.class));
+        elements.addAll(roundEnv.getElementsAnnotatedWith(Configuration.class));
+        for (TypeElement type : ElementFilter.typesIn(elements)) {
+            // IoC scans top level classes only
+            if (type.getNestingKind() != NestingKind.TOP_LEVEL) continue;
+            ComponentIndex.Entry entry = describe(type);
+            entries.put(entry.getClassName(), entry);
+        }
+        return false;
+    }
+
+    private ComponentIndex.Entry describe(TypeElement type) {
+        ComponentIndex.Entry entry = new ComponentIndex.Entry(binaryName(type.asType()),
+                type.getAnnotation(Component.class) != null,
+                type.getAnnotation(Configuration.class) != null);
+        describeConditions(type, entry);
+        return entry;
+    }
+
+    private void describeConditions(TypeElement type, ComponentIndex.Entry entry) {
+        for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            String annotationName = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+            for (Condition.Kind kind : Condition.Kind.values()) {
+                if (!kind.getAnnotation().getName().equals(annotationName)) continue;
+                Map<String, Object> values = new HashMap<>();
+                processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).forEach((element, value) ->
+                        values.put(element.getSimpleName().toString(), value.getValue()));
+                List<String> conditionValues = new ArrayList<>();
+                if (kind == Condition.Kind.ON_PROPERTY) {
+                    conditionValues.add(values.get("name").toString());
+                    conditionValues.add(values.get("havingValue").toString());
+                    conditionValues.add(values.get("matchIfMissing").toString());
+                } else {
+                    for (String element : List.of("value", "name")) {
+                        for (Object value : (List<?>) values.get(element)) {
+                            Object constant = ((AnnotationValue) value).getValue();
+                            conditionValues.add(constant instanceof TypeMirror mirror ? binaryName(mirror) : constant.toString());
+                        }
+                    }
+                }
+                entry.getConditions().add(new Condition(kind, conditionValues));
+            }
+        }
+    }
+
+    private String binaryName(TypeMirror mirror) {
+        TypeMirror erasure = processingEnv.getTypeUtils().erasure(mirror);
+        if (erasure.getKind() == TypeKind.DECLARED) {
+            TypeElement element = (TypeElement) ((DeclaredType) erasure).asElement();
+            return processingEnv.getElementUtils().getBinaryName(element).toString();
+        }
+        return erasure.toString();
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ComponentIndex.LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                ComponentIndex.write(entries.values(), writer);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + ComponentIndex.LOCATION + ": " + e);
+        }
+    }
+}
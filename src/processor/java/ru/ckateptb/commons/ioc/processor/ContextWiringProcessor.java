@@ -0,0 +1,771 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.processor;
+
+import ru.ckateptb.commons.ioc.annotations.*;
+import ru.ckateptb.commons.ioc.annotations.EventListener;
+import ru.ckateptb.commons.ioc.core.Condition;
+import ru.ckateptb.commons.ioc.core.ContextWiring;
+import ru.ckateptb.commons.ioc.core.IoCHolder;
+import ru.ckateptb.commons.ioc.core.Provider;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Generates a {@link ContextWiring} named {@code <holder>_IoCWiring} for every {@link IoCHolder} of the compilation,
+ * covering the components and configurations of the packages the holder scans, so {@code IoC.init} creates them
+ * without reflection.
+ * <p>
+ * The generated code follows the rules of the scan: the {@code @Autowired} or first public constructor, direct
+ * interfaces as implementations, interfaces resolved by qualifier or by name. Beans it cannot create with plain calls
+ * are left to the context at their place in the dependency order, a note tells why. No wiring is generated when a
+ * {@code @Bean} method cannot be called directly, configurations depend on each other in a cycle or a class is
+ * conditional, since its conditions are only known at run time.
+ * <p>
+ * Only the classes of the same compilation are known, {@code IoC} scans the packages instead when the component
+ * index lists other classes. Put the processor after Lombok on the processor path, classes relying on a constructor
+ * Lombok has not generated yet are created reflectively, after every bean that does not depend on them.
+ */
+@SupportedAnnotationTypes("*")
+public class ContextWiringProcessor extends AbstractProcessor {
+    private final Map<String, TypeElement> components = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) return false;
+        TypeElement holderType = processingEnv.getElementUtils().getTypeElement(IoCHolder.class.getName());
+        List<TypeElement> holders = new ArrayList<>();
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            if (type.getAnnotation(Component.class) != null || type.getAnnotation(Configuration.class) != null) {
+                components.put(binaryName(type), type);
+            }
+            if (holderType != null && type.getKind() == ElementKind.CLASS && !type.getModifiers().contains(Modifier.ABSTRACT)
+                    && processingEnv.getTypeUtils().isAssignable(type.asType(), erasure(holderType.asType()))) {
+                holders.add(type);
+            }
+        }
+        for (TypeElement holder : holders) {
+            try {
+                new Wiring(holder).write();
+            } catch (UnsupportedException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "No context wiring generated for " + holder.getQualifiedName() + ": " + e.getMessage(), holder);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Unable to write the context wiring of " + holder.getQualifiedName() + ": " + e, holder);
+            }
+        }
+        return false;
+    }
+
+    private TypeMirror erasure(TypeMirror mirror) {
+        return processingEnv.getTypeUtils().erasure(mirror);
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private static TypeElement typeElement(TypeMirror mirror) {
+        return mirror.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) mirror).asElement() : null;
+    }
+
+    private static TypeElement superclass(TypeElement type) {
+        return typeElement(type.getSuperclass());
+    }
+
+    private static String qualifier(Element element) {
+        Qualifier qualifier = element.getAnnotation(Qualifier.class);
+        return qualifier == null ? null : qualifier.value();
+    }
+
+    /**
+     * The class or interface qualifier the way {@code FinderUtils} reads it, {@code ""} for none.
+     */
+    private static String classQualifier(TypeElement type) {
+        String qualifier = type == null ? null : qualifier(type);
+        return qualifier == null ? "" : qualifier;
+    }
+
+    private enum Kind {
+        COMPONENT,
+        CONFIGURATION,
+        BEAN
+    }
+
+    /**
+     * An implementation class of an interface with the qualifier of the class.
+     */
+    private record Candidate(String className, String simpleName, String qualifier) {
+    }
+
+    /**
+     * An injection point resolved to the node creating its bean, or to the context when {@code target} is
+     * {@code null}.
+     */
+    private record Dependency(TypeElement type, String name, String qualifier, Node target) {
+    }
+
+    private static class Node {
+        private final Kind kind;
+        private final TypeElement owner;
+        private final ExecutableElement method;
+        private final TypeElement type;
+        private final String name;
+        private final Set<Node> dependencies = new LinkedHashSet<>();
+        private final List<Dependency> parameters = new ArrayList<>();
+        private final Map<VariableElement, Dependency> fields = new LinkedHashMap<>();
+        private final Map<ExecutableElement, List<Dependency>> setters = new LinkedHashMap<>();
+        private final List<ExecutableElement> postConstructs = new ArrayList<>();
+        private ExecutableElement constructor;
+        private Node configuration;
+        private String fallback;
+        /**
+         * Whether the constructor, and so what creating the node reaches, is unknown until Lombok has run.
+         */
+        private boolean opaque;
+        private boolean callbacks;
+        private int index;
+
+        private Node(Kind kind, TypeElement owner, ExecutableElement method, TypeElement type, String name) {
+            this.kind = kind;
+            this.owner = owner;
+            this.method = method;
+            this.type = type;
+            this.name = name;
+        }
+
+        private String describe() {
+            return method == null ? owner.getQualifiedName().toString() : owner.getQualifiedName() + "#" + method.getSimpleName();
+        }
+    }
+
+    private static class UnsupportedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private UnsupportedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The wiring of one holder.
+     */
+    private class Wiring {
+        private final TypeElement holder;
+        private final String packageName;
+        private final String[] packages;
+        private final List<TypeElement> classes = new ArrayList<>();
+        private final Map<String, List<Candidate>> implementations = new HashMap<>();
+        private final List<String[]> registrations = new ArrayList<>();
+        private final Map<String, List<Node>> beans = new HashMap<>();
+        private final List<TypeElement> lazy = new ArrayList<>();
+        private final List<Node> nodes = new ArrayList<>();
+
+        private Wiring(TypeElement holder) {
+            this.holder = holder;
+            this.packageName = processingEnv.getElementUtils().getPackageOf(holder).getQualifiedName().toString();
+            ComponentScan scan = holder.getAnnotation(ComponentScan.class);
+            this.packages = scan == null ? new String[]{packageName} : scan.value();
+        }
+
+        private void write() throws UnsupportedException, IOException {
+            Set<TypeElement> selected = new LinkedHashSet<>();
+            for (String scanned : packages) {
+                // the component index matches packages by class name prefix, subpackages included
+                String prefix = scanned.isEmpty() ? "" : scanned + ".";
+                components.forEach((className, type) -> {
+                    if (className.startsWith(prefix)) selected.add(type);
+                });
+            }
+            classes.addAll(selected);
+            for (TypeElement type : classes) {
+                describe(type);
+            }
+            for (Node node : nodes) {
+                analyze(node);
+            }
+            List<Node> order = order();
+            String simpleName = holder.getSimpleName() + ContextWiring.SUFFIX;
+            String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+            List<Element> originatingElements = new ArrayList<>(classes);
+            originatingElements.add(holder);
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, originatingElements.toArray(new Element[0]));
+            try (Writer writer = file.openWriter()) {
+                writer.write(generate(simpleName, order));
+            }
+        }
+
+        /**
+         * Registers the implementations of the class and the nodes creating its beans, like {@code IoC} scans them.
+         */
+        private void describe(TypeElement type) throws UnsupportedException {
+            boolean component = type.getAnnotation(Component.class) != null;
+            boolean configuration = type.getAnnotation(Configuration.class) != null;
+            if (!accessible(type)) throw new UnsupportedException(type.getQualifiedName() + " is not accessible from " + packageDescription());
+            if (component && configuration) throw new UnsupportedException(type.getQualifiedName() + " is both a component and a configuration");
+            for (Condition.Kind kind : Condition.Kind.values()) {
+                if (type.getAnnotation(kind.getAnnotation()) != null) {
+                    throw new UnsupportedException(type.getQualifiedName() + " is conditional on " + kind.getAnnotation().getSimpleName());
+                }
+            }
+            if (component) {
+                List<? extends TypeMirror> interfaces = type.getInterfaces();
+                if (interfaces.isEmpty()) {
+                    implementation(type, type, classQualifier(type));
+                } else {
+                    for (TypeMirror interfaceType : interfaces) {
+                        TypeElement interfaceElement = typeElement(erasure(interfaceType));
+                        if (interfaceElement == null || !accessible(interfaceElement)) {
+                            throw new UnsupportedException(interfaceType + " is not accessible from " + packageDescription());
+                        }
+                        implementation(type, interfaceElement, classQualifier(type));
+                    }
+                }
+                if (type.getAnnotation(Lazy.class) != null) {
+                    lazy.add(type);
+                } else {
+                    addNode(new Node(Kind.COMPONENT, type, null, type, binaryName(type)));
+                }
+                return;
+            }
+            Node configurationNode = new Node(Kind.CONFIGURATION, type, null, type, binaryName(type));
+            nodes.add(configurationNode);
+            Set<String> signatures = new HashSet<>();
+            for (TypeElement current = type; current != null; current = superclass(current)) {
+                for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                    Bean bean = method.getAnnotation(Bean.class);
+                    if (bean == null) continue;
+                    if (!signatures.add(method.getSimpleName() + erasure(method.asType()).toString())) {
+                        throw new UnsupportedException("@Bean method " + describe(current, method) + " is overridden");
+                    }
+                    if (!accessible(method)) {
+                        throw new UnsupportedException("@Bean method " + describe(current, method) + " is not accessible from " + packageDescription());
+                    }
+                    TypeElement returnType = typeElement(erasure(method.getReturnType()));
+                    if (returnType == null || !accessible(returnType)) {
+                        throw new UnsupportedException("@Bean method " + describe(current, method) + " returns " + method.getReturnType());
+                    }
+                    implementation(returnType, returnType, classQualifier(returnType));
+                    String name = bean.value().isEmpty() ? binaryName(returnType) : bean.value();
+                    Node node = new Node(Kind.BEAN, type, method, returnType, name);
+                    node.configuration = configurationNode;
+                    node.dependencies.add(configurationNode);
+                    addNode(node);
+                }
+            }
+        }
+
+        private void implementation(TypeElement implementationClass, TypeElement interfaceClass, String qualifier) {
+            String className = binaryName(implementationClass);
+            List<Candidate> candidates = implementations.computeIfAbsent(binaryName(interfaceClass), key -> new ArrayList<>());
+            for (Candidate candidate : candidates) {
+                if (candidate.className().equals(className)) return;
+            }
+            candidates.add(new Candidate(className, implementationClass.getSimpleName().toString(), qualifier));
+            registrations.add(new String[]{sourceName(implementationClass), sourceName(interfaceClass), qualifier});
+        }
+
+        private void addNode(Node node) {
+            nodes.add(node);
+            beans.computeIfAbsent(binaryName(node.type), key -> new ArrayList<>()).add(node);
+        }
+
+        /**
+         * Resolves the injection points of the node, falling back to the context for the parts plain calls cannot
+         * reach.
+         */
+        private void analyze(Node node) throws UnsupportedException {
+            if (node.kind == Kind.BEAN) {
+                for (VariableElement parameter : node.method.getParameters()) {
+                    node.parameters.add(dependency(node, parameter, parameter.asType(), null));
+                }
+                if (node.fallback != null) {
+                    throw new UnsupportedException("@Bean method " + node.describe() + " " + node.fallback);
+                }
+                return;
+            }
+            TypeElement type = node.owner;
+            if (type.getModifiers().contains(Modifier.ABSTRACT)) fallback(node, "is abstract");
+            node.constructor = constructor(type);
+            if (node.constructor == null) {
+                fallback(node, "has no public constructor");
+            } else if (isGeneratedLater(type, node.constructor)) {
+                fallback(node, "has a constructor generated by Lombok");
+                node.opaque = true;
+            } else {
+                if (!accessible(node.constructor)) fallback(node, "has a constructor not accessible from " + packageDescription());
+                for (VariableElement parameter : node.constructor.getParameters()) {
+                    node.parameters.add(dependency(node, parameter, parameter.asType(), null));
+                }
+            }
+            for (TypeElement current = type; current != null; current = superclass(current)) {
+                for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                    if (field.getAnnotation(Autowired.class) == null) continue;
+                    if (field.getModifiers().contains(Modifier.FINAL) || !accessible(field)) {
+                        fallback(node, "has field " + field.getSimpleName() + " not assignable from " + packageDescription());
+                    }
+                    node.fields.put(field, dependency(node, field, field.asType(), field.getSimpleName().toString()));
+                }
+                if (node.kind != Kind.COMPONENT) continue;
+                for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                    if (method.getAnnotation(Autowired.class) != null) {
+                        if (!accessible(method)) fallback(node, "has setter " + method.getSimpleName() + " not accessible from " + packageDescription());
+                        List<Dependency> dependencies = new ArrayList<>();
+                        for (VariableElement parameter : method.getParameters()) {
+                            dependencies.add(dependency(node, parameter, parameter.asType(), null));
+                        }
+                        node.setters.put(method, dependencies);
+                    }
+                    PostConstruct postConstruct = method.getAnnotation(PostConstruct.class);
+                    if (postConstruct != null) {
+                        if (postConstruct.async()) fallback(node, "has an asynchronous post-construct method");
+                        if (!method.getParameters().isEmpty() || !accessible(method)) {
+                            fallback(node, "has post-construct method " + method.getSimpleName() + " not callable from " + packageDescription());
+                        }
+                        node.postConstructs.add(method);
+                    }
+                    if (method.getAnnotation(Scheduled.class) != null || method.getAnnotation(EventListener.class) != null
+                            || method.getAnnotation(PreDestroy.class) != null) {
+                        node.callbacks = true;
+                    }
+                }
+            }
+        }
+
+        /**
+         * The {@code @Autowired} constructor, otherwise the first public one, as {@code FinderUtils} chooses it.
+         */
+        private ExecutableElement constructor(TypeElement type) {
+            List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+            for (ExecutableElement constructor : constructors) {
+                if (constructor.getAnnotation(Autowired.class) != null) return constructor;
+            }
+            for (ExecutableElement constructor : constructors) {
+                if (constructor.getModifiers().contains(Modifier.PUBLIC)) return constructor;
+            }
+            return null;
+        }
+
+        /**
+         * Whether the implicit default constructor is only there because Lombok, running after this processor, has
+         * not generated the constructor of the class yet.
+         */
+        private boolean isGeneratedLater(TypeElement type, ExecutableElement constructor) {
+            if (processingEnv.getElementUtils().getOrigin(constructor) != Elements.Origin.MANDATED) return false;
+            for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+                TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+                if (annotationType.getQualifiedName().toString().startsWith("lombok.")) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Resolves one injection point of the node, {@code name} is {@code null} for parameters, which are named after
+         * their type. Injection points the generated code cannot resolve make the node a fallback; it still depends
+         * on every bean the point could resolve to, so the context finds them created.
+         */
+        private Dependency dependency(Node node, Element element, TypeMirror mirror, String name) {
+            TypeElement type = typeElement(erasure(mirror));
+            if (type == null) {
+                fallback(node, "injects " + mirror);
+                return null;
+            }
+            String typeName = binaryName(type);
+            boolean aggregate = typeName.equals(Optional.class.getName()) || typeName.equals(List.class.getName())
+                    || typeName.equals(Map.class.getName());
+            if (aggregate || typeName.equals(Provider.class.getName()) || element.getAnnotation(Lazy.class) != null) {
+                fallback(node, aggregate ? "injects " + mirror : "injects " + mirror + " lazily");
+                if (aggregate && mirror instanceof DeclaredType declared && !declared.getTypeArguments().isEmpty()) {
+                    List<? extends TypeMirror> arguments = declared.getTypeArguments();
+                    TypeElement beanType = typeElement(erasure(arguments.get(arguments.size() - 1)));
+                    if (beanType != null) node.dependencies.addAll(candidates(beanType));
+                }
+                return null;
+            }
+            if (!accessible(type)) fallback(node, "injects " + mirror + ", which is not accessible from " + packageDescription());
+            String qualifier = qualifier(element);
+            Node target = resolve(type, name == null ? typeName : name, qualifier);
+            if (target == null) {
+                node.dependencies.addAll(candidates(type));
+                return new Dependency(type, name == null ? typeName : name, qualifier, null);
+            }
+            node.dependencies.add(target);
+            if (!processingEnv.getTypeUtils().isAssignable(target.type.asType(), erasure(mirror))) {
+                fallback(node, "injects " + target.describe() + " as " + mirror);
+            }
+            return new Dependency(type, null, qualifier, target);
+        }
+
+        /**
+         * The node creating the bean the injection point resolves to, or {@code null} when it is not created by the
+         * wiring or cannot be told before the context runs.
+         */
+        private Node resolve(TypeElement type, String name, String qualifier) {
+            String implementationClass = binaryName(type);
+            if (type.getKind().isInterface()) {
+                List<Candidate> candidates = implementations.get(implementationClass);
+                if (candidates == null) return null;
+                implementationClass = candidates.size() == 1 ? candidates.get(0).className() :
+                        find(candidates, qualifier == null || qualifier.isBlank() ? name : qualifier);
+                if (implementationClass == null) return null;
+            }
+            List<Node> registered = beans.getOrDefault(implementationClass, Collections.emptyList());
+            if (registered.size() <= 1) return registered.isEmpty() ? null : registered.get(0);
+            String key = qualifier == null ? implementationClass : qualifier;
+            for (Node node : registered) {
+                if (node.name.equals(key)) return node;
+            }
+            return null;
+        }
+
+        /**
+         * The implementation matching the name like {@code ImplementationContainer} finds it, {@code null} when there
+         * is none or the match would depend on the order the classes are registered in.
+         */
+        private String find(List<Candidate> candidates, String name) {
+            if (name == null) return null;
+            Map<String, String> byName = new HashMap<>();
+            Set<String> simpleNames = new HashSet<>();
+            Set<String> qualifiers = new HashSet<>();
+            for (Candidate candidate : candidates) {
+                if (!simpleNames.add(candidate.simpleName().toLowerCase(Locale.ROOT))) return null;
+                byName.put(candidate.simpleName(), candidate.className());
+                byName.putIfAbsent(candidate.simpleName().toLowerCase(Locale.ROOT), candidate.className());
+            }
+            for (Candidate candidate : candidates) {
+                if (candidate.qualifier().isEmpty()) continue;
+                if (!qualifiers.add(candidate.qualifier().toLowerCase(Locale.ROOT))) return null;
+                byName.put(candidate.qualifier(), candidate.className());
+                byName.put(candidate.qualifier().toLowerCase(Locale.ROOT), candidate.className());
+            }
+            String className = byName.get(name);
+            return className != null ? className : byName.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        /**
+         * Every node creating a bean the type could resolve to.
+         */
+        private List<Node> candidates(TypeElement type) {
+            String typeName = binaryName(type);
+            if (!type.getKind().isInterface()) return beans.getOrDefault(typeName, Collections.emptyList());
+            List<Node> candidates = new ArrayList<>();
+            for (Candidate candidate : implementations.getOrDefault(typeName, Collections.emptyList())) {
+                candidates.addAll(beans.getOrDefault(candidate.className(), Collections.emptyList()));
+            }
+            return candidates;
+        }
+
+        private void fallback(Node node, String reason) {
+            if (node.fallback == null) node.fallback = reason;
+        }
+
+        /**
+         * Nodes ordered so that every node follows the nodes it depends on. Components on a dependency cycle are
+         * left to the context, which creates a whole cycle at once: each of them waits for the previous one and for
+         * everything the cycle depends on.
+         */
+        private List<Node> order() throws UnsupportedException {
+            for (Node node : nodes) {
+                if (node.opaque) followIndependentNodes(node);
+            }
+            List<Node> order = new ArrayList<>(nodes.size());
+            for (List<Node> group : new StronglyConnected(nodes).groups) {
+                Node first = group.get(0);
+                if (group.size() > 1 || first.dependencies.contains(first)) {
+                    Set<Node> external = new LinkedHashSet<>();
+                    for (Node node : group) {
+                        if (node.kind != Kind.COMPONENT) {
+                            throw new UnsupportedException(node.describe() + " is part of a dependency cycle");
+                        }
+                        fallback(node, "is part of a dependency cycle");
+                        external.addAll(node.dependencies);
+                    }
+                    group.forEach(external::remove);
+                    Node previous = null;
+                    for (Node node : group) {
+                        node.dependencies.clear();
+                        node.dependencies.addAll(external);
+                        if (previous != null) node.dependencies.add(previous);
+                        previous = node;
+                    }
+                }
+                order.addAll(group);
+            }
+            return order;
+        }
+
+        /**
+         * Makes the node wait for every node that does not depend on it. Its constructor may reach any bean, one
+         * created by the context ahead of its own step would be created twice or, for a {@code @Bean}, from the
+         * wrong constructor.
+         */
+        private void followIndependentNodes(Node node) {
+            Set<Node> dependents = new HashSet<>(Set.of(node));
+            for (boolean grown = true; grown; ) {
+                grown = false;
+                for (Node other : nodes) {
+                    if (!dependents.contains(other) && !Collections.disjoint(other.dependencies, dependents)) {
+                        grown |= dependents.add(other);
+                    }
+                }
+            }
+            for (Node other : nodes) {
+                if (!dependents.contains(other)) node.dependencies.add(other);
+            }
+        }
+
+        private String generate(String simpleName, List<Node> order) {
+            for (int i = 0; i < order.size(); i++) {
+                order.get(i).index = i;
+            }
+            StringBuilder source = new StringBuilder();
+            if (!packageName.isEmpty()) source.append("package ").append(packageName).append(";\n\n");
+            source.append("import ").append(ContextWiring.class.getName()).append(";\n\n");
+            source.append("@javax.annotation.processing.Generated(\"").append(ContextWiringProcessor.class.getName()).append("\")\n");
+            source.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+            source.append("public final class ").append(simpleName).append(" implements ContextWiring {\n");
+            source.append("    private static final String[] PACKAGES = {").append(literals(Arrays.asList(packages))).append("};\n");
+            List<String> classNames = new ArrayList<>();
+            for (TypeElement type : classes) {
+                classNames.add(binaryName(type));
+            }
+            source.append("    private static final String[] CLASS_NAMES = {").append(literals(classNames)).append("};\n");
+            StringJoiner types = new StringJoiner(", ");
+            StringJoiner dependencies = new StringJoiner(", ");
+            StringJoiner singleThreaded = new StringJoiner(", ");
+            for (Node node : order) {
+                types.add(sourceName(node.type) + ".class");
+                StringJoiner indices = new StringJoiner(", ", "{", "}");
+                node.dependencies.forEach(dependency -> indices.add(String.valueOf(dependency.index)));
+                dependencies.add(indices.toString());
+                singleThreaded.add(String.valueOf(node.owner.getAnnotation(SingleThreaded.class) != null));
+            }
+            source.append("    private static final Class<?>[] TYPES = {").append(types).append("};\n");
+            source.append("    private static final int[][] DEPENDENCIES = {").append(dependencies).append("};\n");
+            source.append("    private static final boolean[] SINGLE_THREADED = {").append(singleThreaded).append("};\n\n");
+            source.append("    @Override\n    public String[] getPackages() {\n        return PACKAGES.clone();\n    }\n\n");
+            source.append("    @Override\n    public String[] getClassNames() {\n        return CLASS_NAMES.clone();\n    }\n\n");
+            source.append("    @Override\n    public Class<?>[] getTypes() {\n        return TYPES.clone();\n    }\n\n");
+            source.append("    @Override\n    public int[][] getDependencies() {\n        return DEPENDENCIES.clone();\n    }\n\n");
+            source.append("    @Override\n    public boolean isSingleThreaded(int step) {\n        return SINGLE_THREADED[step];\n    }\n\n");
+            source.append("    @Override\n    public void prepare(ContextWiring.Context context) {\n");
+            for (String[] registration : registrations) {
+                source.append("        context.implementation(").append(registration[0]).append(".class, ")
+                        .append(registration[1]).append(".class, ").append(literal(registration[2])).append(");\n");
+            }
+            for (TypeElement type : lazy) {
+                source.append("        context.lazy(").append(sourceName(type)).append(".class);\n");
+            }
+            source.append("    }\n\n");
+            source.append("    @Override\n    public void run(int step, Object[] beans, ContextWiring.Context context) throws Exception {\n");
+            source.append("        switch (step) {\n");
+            for (Node node : order) {
+                source.append("            case ").append(node.index).append(" -> step").append(node.index).append("(beans, context);\n");
+            }
+            source.append("            default -> throw new IllegalArgumentException(\"No step \" + step);\n");
+            source.append("        }\n    }\n");
+            for (Node node : order) {
+                if (node.fallback != null) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                            node.describe() + " is created reflectively, it " + node.fallback, node.owner);
+                }
+                source.append("\n    // ").append(node.describe()).append('\n');
+                source.append("    private static void step").append(node.index)
+                        .append("(Object[] beans, ContextWiring.Context context) throws Exception {\n");
+                step(source, node);
+                source.append("        beans[").append(node.index).append("] = bean;\n    }\n");
+            }
+            source.append("}\n");
+            return source.toString();
+        }
+
+        private void step(StringBuilder source, Node node) {
+            String type = sourceName(node.type);
+            if (node.fallback != null) {
+                source.append("        ").append(type).append(" bean = context.")
+                        .append(node.kind == Kind.COMPONENT ? "create" : "configuration").append('(').append(type).append(".class);\n");
+                return;
+            }
+            Map<Dependency, String> values = new IdentityHashMap<>();
+            List<Dependency> all = new ArrayList<>(node.parameters);
+            all.addAll(node.fields.values());
+            node.setters.values().forEach(all::addAll);
+            int resolved = 0;
+            for (Dependency dependency : all) {
+                String dependencyType = sourceName(dependency.type());
+                if (dependency.target() != null) {
+                    values.put(dependency, "(" + dependencyType + ") beans[" + dependency.target().index + "]");
+                    continue;
+                }
+                String variable = "resolved" + resolved++;
+                source.append("        ").append(dependencyType).append(' ').append(variable).append(" = context.resolve(")
+                        .append(dependencyType).append(".class, ").append(literal(dependency.name())).append(", ")
+                        .append(literal(dependency.qualifier())).append(");\n");
+                values.put(dependency, variable);
+            }
+            source.append("        ").append(type).append(" bean = ");
+            if (node.kind == Kind.BEAN) {
+                source.append("((").append(sourceName(node.configuration.type)).append(") beans[")
+                        .append(node.configuration.index).append("]).").append(node.method.getSimpleName());
+                arguments(source, node.parameters, values);
+            } else {
+                source.append("new ").append(type);
+                arguments(source, node.parameters, values);
+            }
+            source.append(";\n");
+            node.fields.forEach((field, dependency) -> source.append("        bean.").append(field.getSimpleName())
+                    .append(" = ").append(values.get(dependency)).append(";\n"));
+            node.setters.forEach((method, dependencies) -> {
+                source.append("        bean.").append(method.getSimpleName());
+                arguments(source, dependencies, values);
+                source.append(";\n");
+            });
+            TypeElement stage = processingEnv.getElementUtils().getTypeElement(CompletionStage.class.getName());
+            for (ExecutableElement method : node.postConstructs) {
+                String call = "bean." + method.getSimpleName() + "()";
+                if (processingEnv.getTypeUtils().isAssignable(erasure(method.getReturnType()), erasure(stage.asType()))) {
+                    source.append("        context.track(").append(call).append(", ")
+                            .append(literal(node.describe() + "#" + method.getSimpleName())).append(");\n");
+                } else {
+                    source.append("        ").append(call).append(";\n");
+                }
+            }
+            if (node.kind == Kind.CONFIGURATION) return;
+            source.append("        context.register(").append(type).append(".class, ").append(literal(node.name))
+                    .append(", bean, ").append(sourceName(node.owner)).append(".class, ").append(node.kind == Kind.BEAN || node.callbacks);
+            for (Dependency dependency : all) {
+                source.append(", ").append(values.get(dependency));
+            }
+            source.append(");\n");
+        }
+
+        /**
+         * Arguments typed as the parameters they are passed to, so the call binds to the annotated overload.
+         */
+        private void arguments(StringBuilder source, List<Dependency> dependencies, Map<Dependency, String> values) {
+            StringJoiner arguments = new StringJoiner(", ", "(", ")");
+            for (Dependency dependency : dependencies) {
+                arguments.add(values.get(dependency));
+            }
+            source.append(arguments);
+        }
+
+        private String literals(List<String> values) {
+            StringJoiner joiner = new StringJoiner(", ");
+            values.forEach(value -> joiner.add(literal(value)));
+            return joiner.toString();
+        }
+
+        private String literal(String value) {
+            return value == null ? "null" : processingEnv.getElementUtils().getConstantExpression(value);
+        }
+
+        private String sourceName(TypeElement type) {
+            return type.getQualifiedName().toString();
+        }
+
+        private String describe(TypeElement type, ExecutableElement method) {
+            return type.getQualifiedName() + "#" + method.getSimpleName();
+        }
+
+        private String packageDescription() {
+            return packageName.isEmpty() ? "the unnamed package" : packageName;
+        }
+
+        private boolean accessible(TypeElement type) {
+            for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+                Set<Modifier> modifiers = element.getModifiers();
+                if (modifiers.contains(Modifier.PRIVATE)) return false;
+                if (!modifiers.contains(Modifier.PUBLIC) && !inPackage(element)) return false;
+            }
+            return true;
+        }
+
+        private boolean accessible(Element member) {
+            Set<Modifier> modifiers = member.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)) return false;
+            if (!accessible((TypeElement) member.getEnclosingElement())) return false;
+            return modifiers.contains(Modifier.PUBLIC) || inPackage(member);
+        }
+
+        private boolean inPackage(Element element) {
+            return processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().contentEquals(packageName);
+        }
+    }
+
+    /**
+     * Strongly connected groups of the nodes, every group following the groups it depends on.
+     */
+    private static class StronglyConnected {
+        private final List<List<Node>> groups = new ArrayList<>();
+        private final Map<Node, Integer> index = new HashMap<>();
+        private final Map<Node, Integer> lowLink = new HashMap<>();
+        private final Deque<Node> stack = new ArrayDeque<>();
+        private final Set<Node> onStack = new HashSet<>();
+
+        private StronglyConnected(List<Node> nodes) {
+            for (Node node : nodes) {
+                if (!index.containsKey(node)) visit(node);
+            }
+        }
+
+        private void visit(Node node) {
+            index.put(node, index.size());
+            lowLink.put(node, index.get(node));
+            stack.push(node);
+            onStack.add(node);
+            for (Node dependency : node.dependencies) {
+                if (!index.containsKey(dependency)) {
+                    visit(dependency);
+                    lowLink.put(node, Math.min(lowLink.get(node), lowLink.get(dependency)));
+                } else if (onStack.contains(dependency)) {
+                    lowLink.put(node, Math.min(lowLink.get(node), index.get(dependency)));
+                }
+            }
+            if (!lowLink.get(node).equals(index.get(node))) return;
+            List<Node> group = new ArrayList<>();
+            Node member;
+            do {
+                member = stack.pop();
+                onStack.remove(member);
+                group.add(member);
+            } while (member != node);
+            groups.add(group);
+        }
+    }
+}
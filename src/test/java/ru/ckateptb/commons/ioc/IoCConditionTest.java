@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.ckateptb.commons.ioc.condition.*;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IoCConditionTest {
+    private IoC<ConditionHolder> ioc;
+
+    @AfterEach
+    void close() {
+        if (ioc != null) ioc.close();
+    }
+
+    @Test
+    void requiresEveryListedClass() {
+        ioc = IoC.init(new ConditionHolder(Map.of()));
+
+        assertNotNull(IoC.get(StringIntegration.class, null));
+        assertNull(IoC.get(MissingIntegration.class, null));
+    }
+
+    @Test
+    void comparesPropertiesWithTheExpectedValue() {
+        ioc = IoC.init(new ConditionHolder(Map.of("feature", "ON")));
+
+        assertNotNull(IoC.get(EnabledFeature.class, null));
+        assertNull(IoC.get(UnsetFeature.class, null));
+        assertNotNull(IoC.get(DefaultFeature.class, null));
+    }
+
+    @Test
+    void rejectsOtherPropertyValues() {
+        ioc = IoC.init(new ConditionHolder(Map.of("feature", "off", "unset", "true")));
+
+        assertNull(IoC.get(EnabledFeature.class, null));
+        assertNotNull(IoC.get(UnsetFeature.class, null));
+        assertNotNull(IoC.get(DefaultFeature.class, null));
+    }
+
+    @Test
+    void seesTheOtherClassesOfThePackage() {
+        ioc = IoC.init(new ConditionHolder(Map.of()));
+
+        assertInstanceOf(RealStore.class, ioc.getBean(Store.class));
+        assertNull(IoC.get(DefaultStore.class, null));
+    }
+
+    @Test
+    void acceptsTheFirstMissingBeanByName() {
+        ioc = IoC.init(new ConditionHolder(Map.of()));
+
+        assertInstanceOf(AlphaCache.class, ioc.getBean(Cache.class));
+        assertNull(IoC.get(BetaCache.class, null));
+    }
+
+    @Test
+    void seesPredefinedBeans() {
+        Cache predefined = new Cache() {
+        };
+        ioc = IoC.init(new ConditionHolder(Map.of()), predefined);
+
+        assertNull(IoC.get(AlphaCache.class, null));
+        assertNull(IoC.get(BetaCache.class, null));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.ckateptb.commons.ioc.core.ScheduledTask;
+import ru.ckateptb.commons.ioc.reload.ReloadHolder;
+import ru.ckateptb.commons.ioc.reload.app.Direct;
+import ru.ckateptb.commons.ioc.reload.app.Transitive;
+import ru.ckateptb.commons.ioc.reload.app.Unrelated;
+import ru.ckateptb.commons.ioc.reload.module.ModuleService;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IoCReloadTest {
+    private static final String MODULE = ModuleService.class.getPackageName();
+    private IoC<ReloadHolder> ioc;
+
+    @BeforeEach
+    void init() {
+        ReloadHolder.DESTROYED.clear();
+        ioc = IoC.init(new ReloadHolder());
+    }
+
+    @AfterEach
+    void close() {
+        ioc.close();
+    }
+
+    @Test
+    void recreatesOnlyTheAffectedBeans() {
+        ModuleService service = ioc.getBean(ModuleService.class);
+        Direct direct = ioc.getBean(Direct.class);
+        Transitive transitive = ioc.getBean(Transitive.class);
+        Unrelated unrelated = ioc.getBean(Unrelated.class);
+
+        ioc.reload(MODULE);
+
+        assertNotSame(service, ioc.getBean(ModuleService.class));
+        assertNotSame(direct, ioc.getBean(Direct.class));
+        assertNotSame(transitive, ioc.getBean(Transitive.class));
+        assertSame(unrelated, ioc.getBean(Unrelated.class));
+    }
+
+    @Test
+    void injectsTheRecreatedBeans() {
+        ioc.reload(MODULE);
+
+        ModuleService service = ioc.getBean(ModuleService.class);
+        Direct direct = ioc.getBean(Direct.class);
+        Transitive transitive = ioc.getBean(Transitive.class);
+        assertSame(service, direct.getService());
+        assertSame(direct, transitive.getDirect());
+        assertSame(ioc.getBean(Unrelated.class), transitive.getUnrelated());
+        assertSame(service, IoC.get(ModuleService.class));
+    }
+
+    @Test
+    void destroysDependentsFirst() {
+        ioc.reload(MODULE);
+
+        assertEquals(List.of("Transitive", "Direct", "ModuleService"), ReloadHolder.DESTROYED);
+    }
+
+    @Test
+    void forgetsTheTasksOfReplacedBeans() {
+        List<ScheduledTask> before = tasks();
+        assertEquals(1, before.size());
+
+        ioc.reload(MODULE);
+
+        List<ScheduledTask> after = tasks();
+        assertEquals(1, after.size());
+        assertTrue(before.get(0).isCancelled());
+        assertNotSame(before.get(0), after.get(0));
+        assertFalse(after.get(0).isCancelled());
+    }
+
+    private List<ScheduledTask> tasks() {
+        return ioc.getScheduler().getTasks().stream()
+                .filter(task -> task.getName().equals(ModuleService.class.getName() + "#tick"))
+                .toList();
+    }
+}
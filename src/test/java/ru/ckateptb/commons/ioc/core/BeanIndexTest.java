@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BeanIndexTest {
+    private final BeanIndex index = new BeanIndex();
+    private final Object owner = new Object();
+
+    @Test
+    void looksUpWithoutQualifierLikeByType() {
+        Repo first = new Repo();
+        Repo second = new Repo();
+        index.add(owner, Repo.class, "first", first);
+        index.add(owner, Repo.class, "second", second);
+
+        assertSame(first, index.get(Repo.class, null));
+        assertSame(index.get(Repo.class), index.get(Repo.class, null));
+        assertSame(second, index.get(Repo.class, "second"));
+        assertNull(index.get(Object.class, null));
+    }
+
+    @Test
+    void prefersTheBeanNamedAfterItsType() {
+        Repo other = new Repo();
+        Repo named = new Repo();
+        index.add(owner, Repo.class, "other", other);
+        index.add(owner, Repo.class, Repo.class.getName(), named);
+
+        assertSame(named, index.get(Repo.class));
+        assertSame(named, index.get(Repo.class, null));
+    }
+
+    @Test
+    void findsBeansByDirectInterfaceAndSimpleName() {
+        Repo repo = new Repo();
+        index.add(owner, Repo.class, Repo.class.getName(), repo);
+
+        assertSame(repo, index.get(Storage.class));
+        assertSame(repo, index.get(Storage.class, "repo"));
+        assertNull(index.get(Storage.class, "missing"));
+    }
+
+    @Test
+    void forgetsTheBeansOfAnOwner() {
+        index.add(owner, Repo.class, Repo.class.getName(), new Repo());
+        index.removeAll(owner);
+
+        assertNull(index.get(Repo.class));
+        assertNull(index.get(Repo.class, null));
+    }
+
+    interface Storage {
+    }
+
+    static class Repo implements Storage {
+    }
+}
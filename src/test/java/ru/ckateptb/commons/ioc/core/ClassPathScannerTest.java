@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ckateptb.commons.ioc.annotations.Component;
+import ru.ckateptb.commons.ioc.core.fixture.ConstantsComponent;
+import ru.ckateptb.commons.ioc.core.fixture.NestedAnnotationComponent;
+import ru.ckateptb.commons.ioc.core.fixture.PlainClass;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassPathScannerTest {
+    private static final Set<String> COMPONENT = Set.of("Lru/ckateptb/commons/ioc/annotations/Component;");
+    private static final String FIXTURES = ConstantsComponent.class.getPackageName();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void skipsLongAndDoubleConstants() throws IOException {
+        List<Condition> conditions = ClassPathScanner.readConditions(ByteBuffer.wrap(bytes(ConstantsComponent.class)), COMPONENT);
+        assertNotNull(conditions);
+        assertEquals(1, conditions.size());
+        assertEquals(Condition.Kind.ON_PROPERTY, conditions.get(0).getKind());
+        assertEquals(List.of("fixture.enabled", "yes", "false"), conditions.get(0).getValues());
+    }
+
+    @Test
+    void skipsNestedAnnotations() throws IOException {
+        List<Condition> conditions = ClassPathScanner.readConditions(ByteBuffer.wrap(bytes(NestedAnnotationComponent.class)), COMPONENT);
+        assertNotNull(conditions);
+        assertEquals(1, conditions.size());
+        assertEquals(Condition.Kind.ON_CLASS, conditions.get(0).getKind());
+        assertEquals(List.of("java.lang.String", "missing.Type"), conditions.get(0).getValues());
+    }
+
+    @Test
+    void rejectsClassMentioningTheAnnotationWithoutIt() throws IOException {
+        assertNull(ClassPathScanner.readConditions(ByteBuffer.wrap(bytes(PlainClass.class)), COMPONENT));
+    }
+
+    @Test
+    void treatsMalformedClassFilesAsNotAnnotated() throws IOException {
+        byte[] bytes = bytes(ConstantsComponent.class);
+        assertNull(ClassPathScanner.readConditions(ByteBuffer.wrap(new byte[0]), COMPONENT));
+        assertNull(ClassPathScanner.readConditions(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}), COMPONENT));
+        for (int length : new int[]{4, 10, bytes.length / 2, bytes.length - 1}) {
+            assertNull(ClassPathScanner.readConditions(ByteBuffer.wrap(Arrays.copyOf(bytes, length)), COMPONENT),
+                    "truncated to " + length);
+        }
+        byte[] unknownTag = bytes.clone();
+        unknownTag[10] = (byte) 99;
+        assertNull(ClassPathScanner.readConditions(ByteBuffer.wrap(unknownTag), COMPONENT));
+    }
+
+    @Test
+    void readsStoredAndCompressedEntries() throws IOException {
+        Path jar = directory.resolve("fixtures.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            zip.setComment("trailing comment");
+            put(zip, ConstantsComponent.class, ZipEntry.STORED);
+            put(zip, NestedAnnotationComponent.class, ZipEntry.DEFLATED);
+            put(zip, PlainClass.class, ZipEntry.DEFLATED);
+        }
+        Map<String, List<Condition>> classes = scan(jar);
+        assertEquals(Set.of(ConstantsComponent.class.getName(), NestedAnnotationComponent.class.getName()), classes.keySet());
+        assertEquals(Condition.Kind.ON_PROPERTY, classes.get(ConstantsComponent.class.getName()).get(0).getKind());
+        assertEquals(Condition.Kind.ON_CLASS, classes.get(NestedAnnotationComponent.class.getName()).get(0).getKind());
+    }
+
+    @Test
+    void releasesTheJarAfterScanning() throws IOException {
+        Path jar = directory.resolve("released.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            put(zip, ConstantsComponent.class, ZipEntry.DEFLATED);
+        }
+        assertEquals(Set.of(ConstantsComponent.class.getName()), scan(jar).keySet());
+        Files.delete(jar);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            put(zip, NestedAnnotationComponent.class, ZipEntry.STORED);
+        }
+        assertEquals(Set.of(NestedAnnotationComponent.class.getName()), scan(jar).keySet());
+    }
+
+    @Test
+    void scansZip64Jars() throws IOException {
+        Path jar = directory.resolve("zip64.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            put(zip, ConstantsComponent.class, ZipEntry.DEFLATED);
+            // more entries than the end of central directory record can count
+            for (int i = 0; i < 0xFFFF; i++) {
+                zip.putNextEntry(new ZipEntry("filler/" + i));
+                zip.closeEntry();
+            }
+            put(zip, NestedAnnotationComponent.class, ZipEntry.STORED);
+            put(zip, PlainClass.class, ZipEntry.DEFLATED);
+        }
+        Map<String, List<Condition>> classes = scan(jar);
+        assertEquals(List.of(ConstantsComponent.class.getName(), NestedAnnotationComponent.class.getName()),
+                List.copyOf(classes.keySet()));
+        assertEquals(Condition.Kind.ON_CLASS, classes.get(NestedAnnotationComponent.class.getName()).get(0).getKind());
+    }
+
+    @Test
+    void skipsMalformedJars() throws IOException {
+        Path garbage = directory.resolve("garbage.jar");
+        Files.write(garbage, new byte[]{'P', 'K', 5, 6, 0, 0, 0});
+        assertTrue(scan(garbage).isEmpty());
+
+        Path valid = directory.resolve("valid.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(valid))) {
+            put(zip, ConstantsComponent.class, ZipEntry.DEFLATED);
+        }
+        byte[] bytes = Files.readAllBytes(valid);
+        Path truncated = directory.resolve("truncated.jar");
+        Files.write(truncated, Arrays.copyOfRange(bytes, 100, bytes.length));
+        assertTrue(scan(truncated).isEmpty());
+    }
+
+    private Map<String, List<Condition>> scan(Path jar) throws IOException {
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, null)) {
+            return new ClassPathScanner(loader, null).findConditionalClasses(FIXTURES, className -> true, List.of(Component.class));
+        }
+    }
+
+    private static void put(ZipOutputStream zip, Class<?> type, int method) throws IOException {
+        byte[] bytes = bytes(type);
+        ZipEntry entry = new ZipEntry(type.getName().replace('.', '/') + ".class");
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.setSize(bytes.length);
+            entry.setCompressedSize(bytes.length);
+            entry.setCrc(crc.getValue());
+        }
+        entry.setExtra(new byte[]{(byte) 0xCA, (byte) 0xFE, 2, 0, 1, 2});
+        zip.putNextEntry(entry);
+        zip.write(bytes);
+        zip.closeEntry();
+    }
+
+    private static byte[] bytes(Class<?> type) throws IOException {
+        try (InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+            assertNotNull(in, type.getName());
+            return in.readAllBytes();
+        }
+    }
+}
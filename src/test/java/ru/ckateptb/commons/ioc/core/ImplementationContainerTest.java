@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core;
+
+import org.junit.jupiter.api.Test;
+import ru.ckateptb.commons.ioc.annotations.Qualifier;
+import ru.ckateptb.commons.ioc.exceptions.IoCException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImplementationContainerTest {
+    private final ImplementationContainer container = new ImplementationContainer();
+
+    @Test
+    void resolvesTheSameBeforeAndAfterFreeze() {
+        register();
+        assertResolves();
+        container.freeze();
+        assertResolves();
+    }
+
+    @Test
+    void resolvesTheSameWhenRegisteredAfterFreeze() {
+        container.freeze();
+        register();
+        assertResolves();
+    }
+
+    @Test
+    void keepsTheRegistrationOrder() {
+        register();
+        assertEquals(List.of(Disk.class, Memory.class, Cloud.class, Tape.class),
+                List.copyOf(container.getImplementationClasses(Storage.class)));
+        container.freeze();
+        assertEquals(List.of(Disk.class, Memory.class, Cloud.class, Tape.class),
+                List.copyOf(container.getImplementationClasses(Storage.class)));
+    }
+
+    @Test
+    void resolvesASingleImplementationWithoutName() {
+        container.putImplementationClass(Disk.class, Storage.class);
+
+        assertSame(Disk.class, container.getImplementationClass(Storage.class, "anything", null));
+    }
+
+    @Test
+    void dropsRemovedImplementations() {
+        register();
+        container.removeImplementationClasses(type -> type == Memory.class || type == Tape.class);
+        assertSame(Disk.class, container.getImplementationClass(Storage.class, "fast", null));
+        container.freeze();
+        container.removeImplementationClasses(type -> type == Cloud.class);
+
+        assertSame(Disk.class, container.getImplementationClass(Storage.class, "fast", null));
+        assertEquals(List.of(Disk.class), List.copyOf(container.getImplementationClasses(Storage.class)));
+        assertTrue(container.contains(Disk.class.getName()));
+        assertFalse(container.contains(Memory.class.getName()));
+    }
+
+    private void register() {
+        container.putImplementationClass(Disk.class, Storage.class);
+        container.putImplementationClass(Memory.class, Storage.class);
+        container.putImplementationClass(Cloud.class, Storage.class, "remote");
+        container.putImplementationClass(Tape.class, Storage.class);
+    }
+
+    private void assertResolves() {
+        assertSame(Disk.class, container.getImplementationClass(Storage.class, "disk", null));
+        assertSame(Memory.class, container.getImplementationClass(Storage.class, "MEMORY", null));
+        // a qualifier overrides a simple name, a later qualifier an earlier one
+        assertSame(Memory.class, container.getImplementationClass(Storage.class, null, "fast"));
+        assertSame(Tape.class, container.getImplementationClass(Storage.class, null, "cloud"));
+        assertSame(Cloud.class, container.getImplementationClass(Storage.class, "tape", "remote"));
+        assertThrows(IoCException.class, () -> container.getImplementationClass(Storage.class, "missing", null));
+        assertTrue(container.contains(Storage.class.getName()));
+        assertTrue(container.contains(Tape.class.getName()));
+    }
+
+    interface Storage {
+    }
+
+    @Qualifier("fast")
+    static class Disk implements Storage {
+    }
+
+    @Qualifier("fast")
+    static class Memory implements Storage {
+    }
+
+    static class Cloud implements Storage {
+    }
+
+    @Qualifier("cloud")
+    static class Tape implements Storage {
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core.fixture;
+
+import ru.ckateptb.commons.ioc.annotations.Component;
+import ru.ckateptb.commons.ioc.annotations.ConditionalOnProperty;
+
+/**
+ * Puts long and double constants, which take two constant pool slots each, before the annotation constants.
+ */
+@Component
+@ConditionalOnProperty(name = "fixture.enabled", havingValue = "yes")
+public class ConstantsComponent {
+    public static final long LONG = 0x1234_5678_9ABC_DEF0L;
+    public static final double DOUBLE = 3.25;
+    public static final long OTHER_LONG = -7L;
+    public static final String STRING = "fixture";
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core.fixture;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Annotation with annotation-valued elements, skipped by the scanner.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Nested {
+    Inner value();
+
+    Inner[] more() default {};
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Inner {
+        String name();
+
+        Class<?> type() default Object.class;
+
+        RetentionPolicy policy() default RetentionPolicy.RUNTIME;
+    }
+}
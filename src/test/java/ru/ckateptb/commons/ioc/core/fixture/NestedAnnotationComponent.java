@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.core.fixture;
+
+import ru.ckateptb.commons.ioc.annotations.Component;
+import ru.ckateptb.commons.ioc.annotations.ConditionalOnClass;
+
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Nested annotations before the component annotation, and one more after its condition.
+ */
+@Nested(value = @Nested.Inner(name = "first", type = String.class),
+        more = {@Nested.Inner(name = "second", policy = RetentionPolicy.CLASS), @Nested.Inner(name = "third")})
+@Component
+@ConditionalOnClass(value = String.class, name = "missing.Type")
+@Nested.Inner(name = "last", type = Nested.class)
+public class NestedAnnotationComponent {
+}
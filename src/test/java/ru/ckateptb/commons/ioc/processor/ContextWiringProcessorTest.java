@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.processor;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ckateptb.commons.ioc.IoC;
+import ru.ckateptb.commons.ioc.core.ContextWiring;
+import ru.ckateptb.commons.ioc.core.IoCHolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compiles a fixture package with the processors on the classpath and inits it twice: once through the generated
+ * wiring and once, with the wiring class deleted, through the component index and reflection. Both contexts have
+ * to create the same beans, inject the same references and run the post constructs in the same order.
+ */
+class ContextWiringProcessorTest {
+    private static final String PACKAGE = "fixture.wiring";
+    private static final String HOLDER = PACKAGE + ".Holder";
+    private static final List<String> BEANS = List.of("EnglishGreeter", "FrenchGreeter", "Greetings",
+            "LombokService", "Clock", "ClockUser", "CycleA", "CycleB", "LazyService");
+    private static final Map<String, String> SOURCES = new LinkedHashMap<>();
+
+    static {
+        SOURCES.put("Holder", """
+                public class Holder implements ru.ckateptb.commons.ioc.core.IoCHolder {}
+                """);
+        SOURCES.put("Events", """
+                public final class Events {
+                    public static final java.util.List<String> LOG = new java.util.concurrent.CopyOnWriteArrayList<>();
+                }
+                """);
+        SOURCES.put("Greeter", """
+                public interface Greeter {}
+                """);
+        SOURCES.put("EnglishGreeter", """
+                @Component
+                public class EnglishGreeter implements Greeter {}
+                """);
+        SOURCES.put("FrenchGreeter", """
+                @Component
+                @Qualifier("french")
+                public class FrenchGreeter implements Greeter {}
+                """);
+        // constructor, field by simple name, field by qualifier and setter, in that order
+        SOURCES.put("Greetings", """
+                @Component
+                public class Greetings {
+                    private final Greeter english;
+                    @Autowired
+                    private Greeter frenchGreeter;
+                    @Autowired
+                    @Qualifier("french")
+                    private Greeter qualified;
+                    private Greeter viaSetter;
+
+                    public Greetings(@Qualifier("englishGreeter") Greeter english) {
+                        this.english = english;
+                        Events.LOG.add("Greetings() " + (frenchGreeter != null));
+                    }
+
+                    @Autowired
+                    public void setGreeter(@Qualifier("french") Greeter greeter) {
+                        this.viaSetter = greeter;
+                        Events.LOG.add("Greetings#setGreeter " + (frenchGreeter != null && qualified != null));
+                    }
+
+                    @PostConstruct
+                    public void init() {
+                        Events.LOG.add("Greetings#init " + (viaSetter != null));
+                    }
+                }
+                """);
+        // the constructor only exists once Lombok has run, the wiring processor has to wait for it
+        SOURCES.put("LombokService", """
+                @Component
+                @lombok.RequiredArgsConstructor
+                public class LombokService {
+                    private final Greetings greetings;
+                    private final ClockUser clockUser;
+
+                    @PostConstruct
+                    public void init() {
+                        Events.LOG.add("LombokService#init");
+                    }
+                }
+                """);
+        SOURCES.put("Clock", """
+                public class Clock {
+                    private final Greeter greeter;
+
+                    public Clock(Greeter greeter) {
+                        this.greeter = greeter;
+                    }
+                }
+                """);
+        SOURCES.put("ClockConfig", """
+                @Configuration
+                public class ClockConfig {
+                    @Autowired
+                    private Greetings greetings;
+
+                    @Bean
+                    public Clock clock(@Qualifier("french") Greeter greeter) {
+                        Events.LOG.add("ClockConfig#clock " + (greetings != null));
+                        return new Clock(greeter);
+                    }
+                }
+                """);
+        SOURCES.put("ClockUser", """
+                @Component
+                public class ClockUser {
+                    @Autowired
+                    private Clock clock;
+
+                    @PostConstruct
+                    public void init() {
+                        Events.LOG.add("ClockUser#init " + (clock != null));
+                    }
+                }
+                """);
+        // field cycle, linearized by the processor; neither side logs since which one comes first is arbitrary
+        SOURCES.put("CycleA", """
+                @Component
+                public class CycleA {
+                    @Autowired
+                    private CycleB cycleB;
+                    @Autowired
+                    private LombokService service;
+                }
+                """);
+        SOURCES.put("CycleB", """
+                @Component
+                public class CycleB {
+                    @Autowired
+                    private CycleA cycleA;
+                }
+                """);
+        SOURCES.put("LazyService", """
+                @Component
+                @Lazy
+                public class LazyService {
+                    @Autowired
+                    private CycleA cycleA;
+
+                    @PostConstruct
+                    public void init() {
+                        Events.LOG.add("LazyService#init");
+                    }
+                }
+                """);
+    }
+
+    @TempDir
+    static Path directory;
+    private static Path wired;
+    private static Path reflective;
+
+    @BeforeAll
+    static void compile() throws IOException {
+        Path sources = Files.createDirectories(directory.resolve("src").resolve(PACKAGE.replace('.', '/')));
+        wired = Files.createDirectories(directory.resolve("wired"));
+        // Lombok last, so the wiring processor sees LombokService without its constructor and has to defer it
+        List<String> arguments = new ArrayList<>(List.of("-d", wired.toString(),
+                "-cp", System.getProperty("java.class.path"), "-nowarn", "-processor", String.join(",",
+                        ComponentIndexProcessor.class.getName(), ContextWiringProcessor.class.getName(),
+                        "lombok.launch.AnnotationProcessorHider$AnnotationProcessor")));
+        for (Map.Entry<String, String> source : SOURCES.entrySet()) {
+            arguments.add(Files.writeString(sources.resolve(source.getKey() + ".java"), "package " + PACKAGE + ";\n"
+                    + "import ru.ckateptb.commons.ioc.annotations.*;\n" + source.getValue()).toString());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[0])), "fixture compiles");
+        reflective = directory.resolve("reflective");
+        try (Stream<Path> files = Files.walk(wired)) {
+            for (Path file : files.toList()) {
+                Path target = reflective.resolve(wired.relativize(file).toString());
+                if (Files.isDirectory(file)) Files.createDirectories(target);
+                else if (!file.getFileName().toString().equals("Holder" + ContextWiring.SUFFIX + ".class")) {
+                    Files.copy(file, target);
+                }
+            }
+        }
+    }
+
+    @Test
+    void generatesTheWiring() {
+        assertTrue(Files.exists(wired.resolve(PACKAGE.replace('.', '/')).resolve("Holder" + ContextWiring.SUFFIX + ".class")));
+        assertTrue(Files.exists(reflective.resolve("META-INF")), "component index is kept for the reflective init");
+    }
+
+    @Test
+    void wiringMatchesTheReflectiveInit() throws Exception {
+        Context withWiring = init(wired);
+        Context withoutWiring = init(reflective);
+        assertTrue(withWiring.wired, "init went through the generated wiring");
+        assertFalse(withoutWiring.wired, "init scanned the package");
+        assertEquals(withoutWiring.beans, withWiring.beans);
+        assertEquals(withoutWiring.references, withWiring.references);
+        assertEquals(withoutWiring.log, withWiring.log);
+    }
+
+    @Test
+    void resolvesQualifiersSimpleNamesAndCycles() throws Exception {
+        Context context = init(wired);
+        assertEquals("EnglishGreeter", context.references.get("Greetings.english"));
+        assertEquals("FrenchGreeter", context.references.get("Greetings.frenchGreeter"));
+        assertEquals("FrenchGreeter", context.references.get("Greetings.qualified"));
+        assertEquals("FrenchGreeter", context.references.get("Greetings.viaSetter"));
+        assertEquals("FrenchGreeter", context.references.get("Clock.greeter"));
+        assertEquals("CycleB", context.references.get("CycleA.cycleB"));
+        assertEquals("CycleA", context.references.get("CycleB.cycleA"));
+        assertEquals("ClockUser", context.references.get("LombokService.clockUser"));
+        assertEquals(List.of("Greetings() false", "Greetings#setGreeter true", "Greetings#init true",
+                "ClockConfig#clock true", "ClockUser#init true", "LombokService#init", "LazyService#init"), context.log);
+    }
+
+    /**
+     * Inits the fixture from its own class loader, so the classes, their static log and the beans are not shared
+     * with the other contexts of the test.
+     */
+    private static Context init(Path classes) throws Exception {
+        Context context = new Context();
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()},
+                ContextWiringProcessorTest.class.getClassLoader())) {
+            IoCHolder holder = (IoCHolder) loader.loadClass(HOLDER).getConstructor().newInstance();
+            IoC<IoCHolder> ioc = IoC.init(holder);
+            try {
+                // the wiring creates the beans from the generated code, only the index and reflection scan
+                context.wired = ioc.getStartupReport().getScanTime(TimeUnit.NANOSECONDS) == 0;
+                Map<Class<?>, Object> beans = new LinkedHashMap<>();
+                for (String name : BEANS) {
+                    Class<?> type = loader.loadClass(PACKAGE + "." + name);
+                    Object bean = ioc.getBean(type);
+                    assertNotNull(bean, name);
+                    beans.put(type, bean);
+                    context.beans.add(name);
+                }
+                for (Map.Entry<Class<?>, Object> bean : beans.entrySet()) {
+                    for (Field field : bean.getKey().getDeclaredFields()) {
+                        if (Modifier.isStatic(field.getModifiers())) continue;
+                        field.setAccessible(true);
+                        Object value = field.get(bean.getValue());
+                        String name = bean.getKey().getSimpleName() + "." + field.getName();
+                        assertNotNull(value, name);
+                        assertSame(beans.get(value.getClass()), value, name);
+                        context.references.put(name, value.getClass().getSimpleName());
+                    }
+                }
+                @SuppressWarnings("unchecked")
+                List<String> log = (List<String>) loader.loadClass(PACKAGE + ".Events").getField("LOG").get(null);
+                context.log.addAll(log);
+            } finally {
+                ioc.close();
+            }
+        }
+        return context;
+    }
+
+    private static class Context {
+        private final List<String> beans = new ArrayList<>();
+        private final Map<String, String> references = new TreeMap<>();
+        private final List<String> log = new ArrayList<>();
+        private boolean wired;
+    }
+}
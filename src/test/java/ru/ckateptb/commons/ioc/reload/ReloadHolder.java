@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.reload;
+
+import ru.ckateptb.commons.ioc.annotations.ComponentScan;
+import ru.ckateptb.commons.ioc.core.IoCHolder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@ComponentScan("ru.ckateptb.commons.ioc.reload")
+public class ReloadHolder implements IoCHolder {
+    /**
+     * Simple names of the destroyed beans, in the order their {@code @PreDestroy} methods ran.
+     */
+    public static final List<String> DESTROYED = new CopyOnWriteArrayList<>();
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.reload.app;
+
+import lombok.Getter;
+import ru.ckateptb.commons.ioc.annotations.Autowired;
+import ru.ckateptb.commons.ioc.annotations.Component;
+import ru.ckateptb.commons.ioc.annotations.PreDestroy;
+import ru.ckateptb.commons.ioc.reload.ReloadHolder;
+
+/**
+ * Depends on the reloaded bean only through {@link Direct}, and on {@link Unrelated}.
+ */
+@Getter
+@Component
+public class Transitive {
+    @Autowired
+    private Direct direct;
+    @Autowired
+    private Unrelated unrelated;
+
+    @PreDestroy
+    public void destroy() {
+        ReloadHolder.DESTROYED.add(getClass().getSimpleName());
+    }
+}
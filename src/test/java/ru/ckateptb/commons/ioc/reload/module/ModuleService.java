@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ru.ckateptb.commons.ioc.reload.module;
+
+import ru.ckateptb.commons.ioc.annotations.Component;
+import ru.ckateptb.commons.ioc.annotations.PreDestroy;
+import ru.ckateptb.commons.ioc.annotations.Scheduled;
+import ru.ckateptb.commons.ioc.reload.ReloadHolder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bean of the reloaded package.
+ */
+@Component
+public class ModuleService {
+    @Scheduled(delay = 1, period = 1, unit = TimeUnit.HOURS)
+    public void tick() {
+    }
+
+    @PreDestroy
+    public void destroy() {
+        ReloadHolder.DESTROYED.add(getClass().getSimpleName());
+    }
+}